@@ -0,0 +1,210 @@
+package ocpGuideBook.cha13;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class Ch13IncrementBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+
+        /*
+        Measures each increment strategy of Ch13ThreadSafe at 1, 2, 4, 8, 16 and 64 threads:
+        volatile ++ (not safe), AtomicInteger, synchronized block, synchronized method, ReentrantLock unfair & fair.
+        Methods of Ch13ThreadSafe are private and print every value, so the strategies are repeated here without printing.
+
+        Two separate runs per strategy, like Throughput and SampleTime modes of JMH:
+        Throughput: increments per second of all threads together. Loop does only increment & stop check, nothing is timed,
+        because System.nanoTime() costs about as much as an increment and would be measured instead of the strategy.
+        Latency: time of single increment, including time waiting for lock. Only every SAMPLE_EVERY-th increment is timed,
+        other increments run untimed between samples, so contention is close to throughput run.
+        Reported as percentiles: p50 is time half of sampled increments were faster than. Sampled time still includes cost of nanoTime(),
+        "empty" row shows that cost (and cost of loop), with increment of plain field.
+        Latency histogram has power-of-two buckets, so percentile is upper bound of bucket (p50 <64 ns means between 32 & 64 ns).
+
+        JMH (Java Microbenchmark Harness) would handle warm-up, forks and dead code elimination properly, but it is not available here.
+        This harness runs warm-up round per strategy before measuring, and checks final count so increments cannot be optimized away.
+        Ch13StripedCounter and Ch13LockFree use the same harness (throughput, sampleLatency) for their benchmarks.
+
+        Fair lock gives lock to the longest waiting thread, so every unlock hands lock to other thread (context switch).
+        Unfair lock lets running thread take it again, much faster under contention, but a thread can wait longer (see p99.9).
+        */
+
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int[] threadCounts = { 1, 2, 4, 8, 16, 64 };
+        for (Strategy strategy : strategies()) {
+            run(strategy.counter().get(), 4, millis / 2);  // warm-up, result ignored
+            for (int threads : threadCounts) {
+                Result result = run(strategy.counter().get(), threads, millis);
+                System.out.printf("%-22s %2d threads: %,14.0f ops/s, p50 <%,d ns, p99 <%,d ns, p99.9 <%,d ns, lost %,d%n",
+                        strategy.name(), threads, result.opsPerSecond(), result.percentile(50), result.percentile(99), result.percentile(99.9), result.lost());
+            }
+        }
+    }
+
+    record Strategy(String name, Supplier<Ch13StripedCounter.Counter> counter) {}
+
+    static List<Strategy> strategies() {
+        return List.of(
+                new Strategy("empty", EmptyCounter::new),
+                new Strategy("volatile ++ (not safe)", Ch13StripedCounter.VolatileCounter::new),
+                new Strategy("AtomicInteger", Ch13StripedCounter.AtomicCounter::new),
+                new Strategy("synchronized block", SynchronizedBlockCounter::new),
+                new Strategy("synchronized method", Ch13StripedCounter.SynchronizedCounter::new),
+                new Strategy("ReentrantLock unfair", () -> new LockCounter(false)),
+                new Strategy("ReentrantLock fair", () -> new LockCounter(true)));
+    }
+
+    static class EmptyCounter implements Ch13StripedCounter.Counter {
+        private long count;  // plain field, only to keep increment from being empty. Not thread-safe, lost increments expected.
+        @Override public void increment() { count++; }
+        @Override public long get() { return count; }
+    }
+
+    static class SynchronizedBlockCounter implements Ch13StripedCounter.Counter {
+        private final Object lock = new Object();
+        private int count;
+        @Override public void increment() { synchronized (lock) { count++; } }
+        @Override public long get() { synchronized (lock) { return count; } }
+    }
+
+    static class LockCounter implements Ch13StripedCounter.Counter {
+        private final ReentrantLock lock;
+        private int count;
+
+        LockCounter(boolean fair) {
+            this.lock = new ReentrantLock(fair);
+        }
+
+        @Override
+        public void increment() {
+            lock.lock();
+            try {
+                count++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long get() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // One operation of benchmark. i counts operations of this thread, from 0. Results are added up, so work that only computes cannot be optimized away.
+    @FunctionalInterface
+    interface Operation {
+        long run(long i);
+    }
+
+    static Operation increments(Ch13StripedCounter.Counter counter) {
+        return i -> {
+            counter.increment();
+            return 0;
+        };
+    }
+
+    private static final int SAMPLE_EVERY = 64;  // power of two
+    private static volatile long sink;
+
+    // Latency buckets: bucket i counts sampled increments that took less than 2^i ns.
+    record Result(long ops, long millis, long lost, long[] buckets) {
+        double opsPerSecond() { return ops * 1000.0 / millis; }
+
+        long percentile(double percentile) {
+            long samples = 0;
+            for (long b : buckets) samples += b;
+            long rank = (long) Math.ceil(samples * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0) return 1L << i;
+            }
+            return 0;
+        }
+    }
+
+    // Throughput run, then latency run, millis each. Lost increments are counted after throughput run.
+    static Result run(Ch13StripedCounter.Counter counter, int threads, long millis) throws InterruptedException {
+        long ops = throughput(increments(counter), threads, millis);
+        long lost = ops - counter.get();
+        return new Result(ops, millis, lost, sampleLatency(increments(counter), threads, millis));
+    }
+
+    // Returns number of operations all threads did in millis. Nothing is timed inside the loop.
+    static long throughput(Operation operation, int threads, long millis) throws InterruptedException {
+        long ops = 0;
+        for (long[] done : runWorkers(threads, millis, stop -> {
+            long n = 0;
+            long sum = 0;
+            while (!stop.get()) sum += operation.run(n++);
+            return new long[] { n, sum };
+        })) {
+            ops += done[0];
+            sink += done[1];
+        }
+        return ops;
+    }
+
+    // Returns latency buckets (see Result) of every SAMPLE_EVERY-th operation.
+    static long[] sampleLatency(Operation operation, int threads, long millis) throws InterruptedException {
+        var total = new long[64];
+        for (long[] done : runWorkers(threads, millis, stop -> {
+            var buckets = new long[65];  // per thread, so recording does not add contention. Last entry is sum of results.
+            long n = 0;
+            while (!stop.get()) {
+                if ((n & (SAMPLE_EVERY - 1)) == 0) {
+                    long begin = System.nanoTime();
+                    buckets[64] += operation.run(n++);
+                    long nanos = System.nanoTime() - begin;
+                    buckets[64 - Long.numberOfLeadingZeros(nanos)]++;  // nanos is 0 to 2^62, bucket 0 to 63
+                } else {
+                    buckets[64] += operation.run(n++);
+                }
+            }
+            return buckets;
+        })) {
+            for (int i = 0; i < total.length; i++) total[i] += done[i];
+            sink += done[64];
+        }
+        return total;
+    }
+
+    // Starts threads together, lets them run worker until stop is set after millis, and returns result of each thread.
+    // Stop check is volatile read per operation, same cost for every strategy.
+    private static <R> List<R> runWorkers(int threads, long millis, Function<AtomicBoolean, R> worker) throws InterruptedException {
+        var start = new CountDownLatch(1);
+        var stop = new AtomicBoolean();
+        var results = new ArrayList<R>();
+        var workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                R result = worker.apply(stop);
+                synchronized (results) { results.add(result); }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread thread : workers) thread.join();
+        return results;
+    }
+
+}
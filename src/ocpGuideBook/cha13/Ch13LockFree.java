@@ -0,0 +1,235 @@
+package ocpGuideBook.cha13;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+public class Ch13LockFree {
+
+    public static void main(String[] args) throws InterruptedException {
+
+        /*
+        Lock-free update: read value, compute new value, compareAndSet(old, new). If other thread changed value in between, CAS fails and we retry.
+        No thread ever waits for a lock holder, so a thread that is paused (by scheduler, GC...) does not block others.
+        VarHandle (java.lang.invoke) gives CAS on a field of ordinary object, without AtomicLong object per value.
+        Under contention, threads retrying immediately keep stealing cache line from each other and most CAS fail.
+        Exponential backoff: after each failure wait random time up to limit, and double limit, so fewer threads retry at the same time.
+
+        CAS works on one variable. For state of several fields (x & y below), StampedLock has optimistic read:
+        tryOptimisticRead() returns stamp without locking, read fields, then validate(stamp) checks no write happened meanwhile.
+        If write happened, read again under read lock. Readers write nothing shared, so they do not slow each other down like
+        ReentrantReadWriteLock, where every read lock/unlock updates reader count (one contended variable again).
+        StampedLock is not reentrant, and has no Condition.
+
+        Benchmarks below use hand-made harness of Ch13IncrementBenchmark (no JMH here). Which option wins depends on cores, contention and read/write ratio:
+        write-heavy counter: CAS with backoff vs. without, AtomicInteger and ReentrantLock.
+        read-heavy point: StampedLock optimistic read vs. ReentrantLock and ReentrantReadWriteLock, at 50%, 90% and 99% reads.
+        */
+
+        var counter = new Ch13LockFree();
+        System.out.println(counter.updateAndGet(v -> v + 5));  // 5
+        System.out.println(counter.incrementAndGet());  // 6
+
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int[] threadCounts = { 1, 4, 16, 64 };
+        for (var strategy : counterStrategies()) {
+            Ch13IncrementBenchmark.run(strategy.counter().get(), 4, millis / 2);  // warm-up
+            for (int threads : threadCounts) {
+                var result = Ch13IncrementBenchmark.run(strategy.counter().get(), threads, millis);
+                System.out.printf("%-22s %2d threads: %,14.0f ops/s, p50 <%,d ns, p99 <%,d ns, p99.9 <%,d ns%n",
+                        strategy.name(), threads, result.opsPerSecond(), result.percentile(50), result.percentile(99), result.percentile(99.9));
+            }
+        }
+        for (int readPercent : new int[] { 50, 90, 99 }) {
+            for (var strategy : pointStrategies()) {
+                Ch13IncrementBenchmark.throughput(readOrMove(strategy.point().get(), readPercent), 4, millis / 2);  // warm-up
+                for (int threads : threadCounts) {
+                    long ops = Ch13IncrementBenchmark.throughput(readOrMove(strategy.point().get(), readPercent), threads, millis);
+                    double opsPerSecond = ops * 1000.0 / millis;
+                    System.out.printf("%-22s %2d%% reads %2d threads: %,14.0f ops/s%n", strategy.name(), readPercent, threads, opsPerSecond);
+                }
+            }
+        }
+    }
+
+    private static final VarHandle VALUE;
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(Ch13LockFree.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int MIN_BACKOFF = 1;  // spins
+    private static final int MAX_BACKOFF = 1 << 10;
+
+    private volatile long value;
+    private final boolean backoff;
+
+    Ch13LockFree() {
+        this(true);
+    }
+
+    Ch13LockFree(boolean backoff) {
+        this.backoff = backoff;
+    }
+
+    long get() {
+        return value;
+    }
+
+    long incrementAndGet() {
+        return updateAndGet(v -> v + 1);
+    }
+
+    // Function may run several times (once per attempt), so it must not have side effects.
+    long updateAndGet(LongUnaryOperator function) {
+        int limit = MIN_BACKOFF;
+        while (true) {
+            long current = value;
+            long next = function.applyAsLong(current);
+            if (VALUE.compareAndSet(this, current, next)) return next;
+            if (backoff) {
+                // Random wait, so threads that failed together do not retry together.
+                for (int spins = ThreadLocalRandom.current().nextInt(limit) + 1; spins > 0; spins--) Thread.onSpinWait();
+                limit = Math.min(limit * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
+    // Point with x & y that must be read together.
+    interface Point {
+        void move(double dx, double dy);
+        double distanceFromOrigin();
+    }
+
+    // Based on example in StampedLock javadoc.
+    static class StampedPoint implements Point {
+        private final StampedLock lock = new StampedLock();
+        private double x;
+        private double y;
+
+        @Override
+        public void move(double dx, double dy) {
+            long stamp = lock.writeLock();
+            try {
+                x += dx;
+                y += dy;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @Override
+        public double distanceFromOrigin() {
+            long stamp = lock.tryOptimisticRead();  // 0 if write locked now
+            double currentX = x;
+            double currentY = y;
+            if (!lock.validate(stamp)) {  // written meanwhile, x & y may be from different moves
+                stamp = lock.readLock();
+                try {
+                    currentX = x;
+                    currentY = y;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return Math.hypot(currentX, currentY);  // computed only after validate, from consistent values
+        }
+    }
+
+    static class LockPoint implements Point {
+        private final ReentrantLock lock = new ReentrantLock();
+        private double x;
+        private double y;
+
+        @Override
+        public void move(double dx, double dy) {
+            lock.lock();
+            try {
+                x += dx;
+                y += dy;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public double distanceFromOrigin() {
+            lock.lock();
+            try {
+                return Math.hypot(x, y);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    static class ReadWriteLockPoint implements Point {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private double x;
+        private double y;
+
+        @Override
+        public void move(double dx, double dy) {
+            lock.writeLock().lock();
+            try {
+                x += dx;
+                y += dy;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public double distanceFromOrigin() {
+            lock.readLock().lock();
+            try {
+                return Math.hypot(x, y);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    static class CasCounter implements Ch13StripedCounter.Counter {
+        private final Ch13LockFree count;
+        CasCounter(boolean backoff) { this.count = new Ch13LockFree(backoff); }
+        @Override public void increment() { count.incrementAndGet(); }
+        @Override public long get() { return count.get(); }
+    }
+
+    static List<Ch13IncrementBenchmark.Strategy> counterStrategies() {
+        return List.of(
+                new Ch13IncrementBenchmark.Strategy("VarHandle CAS", () -> new CasCounter(false)),
+                new Ch13IncrementBenchmark.Strategy("VarHandle CAS backoff", () -> new CasCounter(true)),
+                new Ch13IncrementBenchmark.Strategy("AtomicInteger", Ch13StripedCounter.AtomicCounter::new),
+                new Ch13IncrementBenchmark.Strategy("ReentrantLock unfair", () -> new Ch13IncrementBenchmark.LockCounter(false)));
+    }
+
+    record PointStrategy(String name, Supplier<Point> point) {}
+
+    static List<PointStrategy> pointStrategies() {
+        return List.of(
+                new PointStrategy("ReentrantLock", LockPoint::new),
+                new PointStrategy("ReadWriteLock", ReadWriteLockPoint::new),
+                new PointStrategy("StampedLock optimistic", StampedPoint::new));
+    }
+
+    // Each thread reads readPercent of its operations and moves point otherwise.
+    static Ch13IncrementBenchmark.Operation readOrMove(Point point, int readPercent) {
+        return i -> {
+            if (i % 100 < readPercent) return (long) point.distanceFromOrigin();
+            point.move(1, 1);
+            return 0;
+        };
+    }
+
+}
@@ -0,0 +1,153 @@
+package ocpGuideBook.cha13;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Ch13StripedCounter {
+
+    public static void main(String[] args) throws InterruptedException {
+
+        /*
+        AtomicInteger.incrementAndGet() is compare-and-set (CAS) on one memory location.
+        With many threads, all of them fight for one cache line: CAS of most threads fails and is retried, so throughput drops as threads are added.
+        Striped counter gives threads different cells (stripes) to add to. sum() adds all cells.
+        Each cell is on its own cache line (padded with unused longs), otherwise cells next to each other would still share a line (false sharing).
+        LongAdder in java.util.concurrent.atomic works the same way, and should be used in practice.
+
+        sum() is exact when no thread is incrementing. While threads are incrementing, it is a value the counter had at some point during sum().
+        approximate(maxAgeNanos) returns sum cached for up to maxAgeNanos, so frequent readers do not walk all stripes each time.
+
+        JMH (Java Microbenchmark Harness) is the right tool for numbers like these, but it is not available here.
+        Hand-made harness of Ch13IncrementBenchmark does warm-up round, then runs each counter for fixed time and counts increments.
+        Increments do not print like Ch13ThreadSafe, printing would cost more than increment itself.
+        Striped counter only wins when threads really run at the same time, on several cores. With one core, AtomicInteger is fastest.
+        */
+
+        var counter = new Ch13StripedCounter();
+        counter.increment();
+        counter.add(5);
+        System.out.println(counter.sum());  // 6
+
+        for (int threads : new int[] { 1, 4, 16, 64 }) {
+            System.out.println(threads + " threads:");
+            compare(threads, 200);  // warm-up, lets JIT compile increment code
+            compare(threads, 1000);
+        }
+    }
+
+    // Longs per stripe. 16 longs = 128 bytes: some CPUs fetch cache lines (64 bytes) in pairs.
+    private static final int STRIDE = 16;
+    private static final AtomicInteger probeSeeder = new AtomicInteger();
+    private static final ThreadLocal<int[]> probe = ThreadLocal.withInitial(() -> new int[] { nextProbe() });  // int[] so it can change without boxing
+
+    // Odd increment visits every stripe index before repeating, so threads start spread over stripes.
+    // Never 0: xorshift maps 0 to 0, thread with probe 0 could never move to another stripe. (Same rule as LongAdder.)
+    private static int nextProbe() {
+        int seed = probeSeeder.addAndGet(0x9E3779B9);
+        return seed == 0 ? 1 : seed;
+    }
+
+    private record Cached(long sum, long at) {}
+
+    private final AtomicLongArray cells;
+    private final int mask;
+    private volatile Cached cached = new Cached(0, System.nanoTime());
+
+    Ch13StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    Ch13StripedCounter(int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("Invalid stripes: " + stripes);
+        int n = Integer.highestOneBit(stripes * 2 - 1);  // power of two >= stripes, so index is probe & mask
+        this.mask = n - 1;
+        this.cells = new AtomicLongArray((n + 1) * STRIDE);  // first STRIDE longs left empty, away from array header & other objects
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long x) {
+        int[] p = probe.get();
+        int slot = ((p[0] & mask) + 1) * STRIDE;
+        long v = cells.get(slot);
+        if (!cells.compareAndSet(slot, v, v + x)) {
+            // Other thread uses same stripe. Move this thread to another stripe (xorshift random), then add without giving up.
+            int h = p[0];
+            h ^= h << 13;
+            h ^= h >>> 17;
+            h ^= h << 5;
+            p[0] = h;
+            cells.getAndAdd(slot, x);
+        }
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int slot = STRIDE; slot < cells.length(); slot += STRIDE) sum += cells.get(slot);
+        return sum;
+    }
+
+    // Sum at most maxAgeNanos old. Two readers may both recompute it, that only costs extra sum().
+    long approximate(long maxAgeNanos) {
+        Cached c = cached;
+        long now = System.nanoTime();
+        if (now - c.at() < maxAgeNanos) return c.sum();
+        long sum = sum();
+        cached = new Cached(sum, now);
+        return sum;
+    }
+
+    // Not atomic: increments during reset() may or may not be kept.
+    void reset() {
+        for (int slot = STRIDE; slot < cells.length(); slot += STRIDE) cells.set(slot, 0);
+        cached = new Cached(0, System.nanoTime());
+    }
+
+    // Variants of Ch13ThreadSafe, without printing.
+    interface Counter {
+        void increment();
+        long get();
+    }
+
+    static class VolatileCounter implements Counter {
+        private volatile int count;
+        @Override public void increment() { count++; }  // not atomic, loses increments
+        @Override public long get() { return count; }
+    }
+
+    static class SynchronizedCounter implements Counter {
+        private int count;
+        @Override public synchronized void increment() { count++; }
+        @Override public synchronized long get() { return count; }
+    }
+
+    static class AtomicCounter implements Counter {
+        private final AtomicInteger count = new AtomicInteger();
+        @Override public void increment() { count.incrementAndGet(); }
+        @Override public long get() { return count.get(); }
+    }
+
+    static class LongAdderCounter implements Counter {
+        private final LongAdder count = new LongAdder();
+        @Override public void increment() { count.increment(); }
+        @Override public long get() { return count.sum(); }
+    }
+
+    static class StripedCounter implements Counter {
+        private final Ch13StripedCounter count = new Ch13StripedCounter();
+        @Override public void increment() { count.increment(); }
+        @Override public long get() { return count.sum(); }
+    }
+
+    static void compare(int threads, long millis) throws InterruptedException {
+        Counter[] counters = { new VolatileCounter(), new SynchronizedCounter(), new AtomicCounter(), new LongAdderCounter(), new StripedCounter() };
+        for (Counter counter : counters) {
+            long done = Ch13IncrementBenchmark.throughput(Ch13IncrementBenchmark.increments(counter), threads, millis);
+            System.out.printf("  %-20s %,15.0f increments/s, lost %,d%n", counter.getClass().getSimpleName(), done * 1000.0 / millis, done - counter.get());
+        }
+    }
+
+}
@@ -92,6 +92,7 @@ public class Ch13ThreadSafe {
                 lock.unlock();  // It's good practice to have unlock in try-finally.
             }
         }  // Make sure you call same number of lock() (or tryLock()) and unlock(). Otherwise, next call to lock() or tryLock() never gets the lock.
+        // For short read-modify-write on one value, see Ch13LockFree for lock-free CAS with backoff, and StampedLock optimistic read.
         
         
         /*
@@ -116,6 +117,7 @@ public class Ch13ThreadSafe {
         System.out.print(++count + " ");  // increment operator is not atomic operation. Read & write is not one single operation.
     }
     
+    // Under many threads every incrementAndGet() competes for the same value. See Ch13StripedCounter for counter spread over stripes.
     private void incrementCount() {
         System.out.print(cnt.incrementAndGet() + " ");  // incrementAndGet is atomic operation.
     }
@@ -132,5 +134,6 @@ public class Ch13ThreadSafe {
     }
     // Can also put synchronized keyword on static method. Or create block with synchronized(Ch13ThreadSafe.class).
     // Static synchronization is to order thread access across threads of all instances rather than single instance.
+    // See Ch13IncrementBenchmark for throughput & latency of each increment strategy above, and of ReentrantLock fair & unfair.
     
 }
@@ -0,0 +1,100 @@
+package ocpGuideBook.cha14;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class Ch14AdaptiveCopy {
+
+    public static void main(String[] args) throws IOException {
+
+        // Ch14IOStreams.copyStreamWithBuffer reads 1024 bytes at a time and flushes after every chunk.
+        // Each read(), write() and flush() on a file or socket is a system call, which is costly on network-mounted outputs.
+        // Bigger buffer means fewer reads/writes. Flushing less often means fewer flushes,
+        //     at the cost of losing more unwritten data if application terminates unexpectedly.
+
+        byte[] data = new byte[8 * 1024 * 1024];
+        Arrays.fill(data, (byte) 'a');
+
+        var copier = new Ch14AdaptiveCopy(1024, 256 * 1024, 1024 * 1024, 100);  // flush every 1 MB or every 100 ms
+        try (var in = new ByteArrayInputStream(data); var out = new ByteArrayOutputStream(data.length)) {
+            copier.copy(in, out);
+        }
+        System.out.println(copier);  // 8,388,608 bytes, buffer 262,144, reads 40 (saved 8,152), writes 40 (saved 8,152), flushes 8 (saved 8,184)
+    }
+
+    static final int BASELINE_BATCH = 1024;  // batchSize of copyStreamWithBuffer, used to count saved calls.
+
+    private final int maxBufferSize;
+    private final long flushBytes;
+    private final long flushNanos;
+    private byte[] buffer;
+
+    private long bytes;
+    private long reads;
+    private long writes;
+    private long flushes;
+
+    // initialSize grows up to maxBufferSize. Flushes when flushBytes are written or flushMillis passed since last flush, whichever comes first.
+    Ch14AdaptiveCopy(int initialSize, int maxBufferSize, long flushBytes, long flushMillis) {
+        if (initialSize <= 0 || maxBufferSize < initialSize) throw new IllegalArgumentException("Invalid buffer size: " + initialSize + ", " + maxBufferSize);
+        this.buffer = new byte[initialSize];
+        this.maxBufferSize = maxBufferSize;
+        this.flushBytes = flushBytes;
+        this.flushNanos = flushMillis * 1_000_000;
+    }
+
+    long copy(InputStream in, OutputStream out) throws IOException {
+        long copied = 0;
+        long unflushed = 0;
+        long lastFlush = System.nanoTime();
+        int lengthRead;
+        while ((lengthRead = in.read(buffer, 0, buffer.length)) > 0) {
+            reads++;
+            out.write(buffer, 0, lengthRead);
+            writes++;
+            copied += lengthRead;
+            unflushed += lengthRead;
+            long now = System.nanoTime();
+            if (unflushed >= flushBytes || now - lastFlush >= flushNanos) {
+                out.flush();
+                flushes++;
+                unflushed = 0;
+                lastFlush = now;
+            }
+            // Stream filled whole buffer, so it could have given more. Double the buffer up to the cap.
+            if (lengthRead == buffer.length && buffer.length < maxBufferSize) {
+                buffer = new byte[Math.min(buffer.length * 2, maxBufferSize)];
+            }
+        }
+        if (unflushed > 0) {  // always flush what is left at the end
+            out.flush();
+            flushes++;
+        }
+        bytes += copied;
+        return copied;
+    }
+
+    // Counters below accumulate across copy() calls on the same instance.
+    long bytes() { return bytes; }
+    long reads() { return reads; }
+    long writes() { return writes; }
+    long flushes() { return flushes; }
+    int bufferSize() { return buffer.length; }
+
+    // Calls copyStreamWithBuffer would have made for the same bytes: one read, write and flush per 1024 bytes.
+    long baselineChunks() { return (bytes + BASELINE_BATCH - 1) / BASELINE_BATCH; }
+    long readsSaved() { return baselineChunks() - reads; }
+    long writesSaved() { return baselineChunks() - writes; }
+    long flushesSaved() { return baselineChunks() - flushes; }
+    long syscallsSaved() { return readsSaved() + writesSaved() + flushesSaved(); }
+
+    public String toString() {
+        return String.format("%,d bytes, buffer %,d, reads %,d (saved %,d), writes %,d (saved %,d), flushes %,d (saved %,d)",
+                bytes, buffer.length, reads, readsSaved(), writes, writesSaved(), flushes, flushesSaved());
+    }
+
+}
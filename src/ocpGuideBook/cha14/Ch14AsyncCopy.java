@@ -0,0 +1,192 @@
+package ocpGuideBook.cha14;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Ch14AsyncCopy {
+
+    public static void main(String[] args) throws Exception {
+
+        // AsynchronousFileChannel read()/write() return immediately. Result is delivered later to CompletionHandler (or Future).
+        // Calling thread is not blocked, so one thread can start many copies. Handlers run on executor given to open().
+        // Queue depth is number of blocks in flight (read or write started but not completed) per copy.
+        // Each block uses a direct buffer. Like Ch14ChannelCopy, buffers are taken from pool and given back when copy no longer needs them.
+
+        Path src = Files.createTempFile("ch14src", ".data");
+        src.toFile().deleteOnExit();
+        byte[] data = new byte[1024 * 1024 + 123];
+        new Random(14).nextBytes(data);
+        Files.write(src, data);
+
+        ExecutorService service = Executors.newSingleThreadExecutor();  // one thread drives all copies
+        try {
+            var copier = new Ch14AsyncCopy(service, 64 * 1024, 4);
+            var copies = new ArrayList<CompletableFuture<Long>>();
+            var targets = new ArrayList<Path>();
+            for (int i = 0; i < 100; i++) {
+                Path dest = Files.createTempFile("ch14dest", ".data");
+                dest.toFile().deleteOnExit();
+                targets.add(dest);
+                copies.add(copier.copy(src, dest));
+            }
+            CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new)).join();
+            System.out.println(copies.get(99).join());  // 1048699
+            System.out.println(Files.mismatch(src, targets.get(99)));  // -1 (files are same)
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private final ExecutorService executor;
+    private final int blockSize;
+    private final int queueDepth;
+    private final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);  // idle buffers of blockSize
+
+    Ch14AsyncCopy(ExecutorService executor, int blockSize, int queueDepth) {
+        if (blockSize <= 0 || queueDepth <= 0) throw new IllegalArgumentException("Invalid block size or queue depth: " + blockSize + ", " + queueDepth);
+        this.executor = executor;
+        this.blockSize = blockSize;
+        this.queueDepth = queueDepth;
+    }
+
+    // Returns immediately. Future completes with number of bytes copied, or exceptionally with IOException.
+    CompletableFuture<Long> copy(Path input, Path output) {
+        try {
+            var in = AsynchronousFileChannel.open(input, Set.of(StandardOpenOption.READ), executor);
+            AsynchronousFileChannel out;
+            try {
+                out = AsynchronousFileChannel.open(output, EnumSet.of(StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), executor);
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+            return new Copy(in, out).start();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private ByteBuffer borrow() {
+        ByteBuffer buffer = buffers.poll();  // null when pool is empty
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(blockSize);
+    }
+
+    private void release(ByteBuffer buffer) {
+        buffers.offer(buffer);  // false when pool is full, extra buffer is left for GC
+    }
+
+    // State of one copy. Blocks are claimed by position, each block is read then written, then next block is claimed.
+    private class Copy {
+        final AsynchronousFileChannel in;
+        final AsynchronousFileChannel out;
+        final CompletableFuture<Long> result = new CompletableFuture<>();
+        final AtomicLong nextPosition = new AtomicLong();
+        final AtomicLong copied = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+        long size;
+
+        Copy(AsynchronousFileChannel in, AsynchronousFileChannel out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        CompletableFuture<Long> start() throws IOException {
+            try {
+                size = in.size();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            inFlight.incrementAndGet();  // hold one count until all blocks are started, so copy cannot finish early
+            for (int i = 0; i < queueDepth; i++) nextBlock(borrow());
+            blockDone();
+            return result;
+        }
+
+        void nextBlock(ByteBuffer buffer) {
+            long position = nextPosition.getAndAdd(blockSize);
+            if (position >= size || result.isDone()) {  // no more blocks for this buffer
+                release(buffer);
+                return;
+            }
+            inFlight.incrementAndGet();
+            buffer.clear().limit((int) Math.min(blockSize, size - position));
+            in.read(buffer, position, position, readHandler(buffer));  // attachment is start of block
+        }
+
+        CompletionHandler<Integer, Long> readHandler(ByteBuffer buffer) {
+            return new CompletionHandler<>() {
+                public void completed(Integer n, Long blockStart) {
+                    if (n < 0 || !buffer.hasRemaining()) {  // block filled (or file got shorter), write it
+                        buffer.flip();
+                        out.write(buffer, blockStart, blockStart, writeHandler(buffer));
+                    } else {  // short read, read rest of block
+                        in.read(buffer, blockStart + buffer.position(), blockStart, this);
+                    }
+                }
+                public void failed(Throwable e, Long blockStart) { fail(e, buffer); }
+            };
+        }
+
+        CompletionHandler<Integer, Long> writeHandler(ByteBuffer buffer) {
+            return new CompletionHandler<>() {
+                public void completed(Integer n, Long blockStart) {
+                    copied.addAndGet(n);
+                    if (buffer.hasRemaining()) {  // short write, write rest of block
+                        out.write(buffer, blockStart + buffer.position(), blockStart, this);
+                    } else {
+                        nextBlock(buffer);  // reuse buffer for next block, keeps queueDepth blocks in flight
+                        blockDone();
+                    }
+                }
+                public void failed(Throwable e, Long blockStart) { fail(e, buffer); }
+            };
+        }
+
+        void blockDone() {
+            if (inFlight.decrementAndGet() == 0) {
+                try {
+                    close();
+                    result.complete(copied.get());
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        // Operation using buffer has ended (failed), so buffer can be released.
+        void fail(Throwable e, ByteBuffer buffer) {
+            release(buffer);
+            if (result.completeExceptionally(e)) {
+                try {
+                    close();  // pending operations on closed channel fail with AsynchronousCloseException, ignored since result is done
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+        }
+
+        void close() throws IOException {
+            try (in; out) {}  // closes both, even if first close throws (Java 9+ allows effectively final resources)
+        }
+    }
+
+}
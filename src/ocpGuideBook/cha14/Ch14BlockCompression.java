@@ -0,0 +1,294 @@
+package ocpGuideBook.cha14;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class Ch14BlockCompression {
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+
+        // Compression trades CPU for I/O: fewer bytes to write/read, more time spent compressing.
+        // Data is compressed in fixed size blocks, each block written as: codec id, raw length, compressed length, compressed bytes.
+        // Reader decompresses one block at a time, so it can stream without loading whole file.
+        // Deflater level 0 (no compression, fastest) to 9 (best compression, slowest). Deflater.DEFAULT_COMPRESSION is -1 (level 6).
+
+        var dogs = new ArrayList<Dog>();
+        for (int i = 0; i < 200_000; i++) dogs.add(new Dog("Puppy" + (i % 50), i % 20, "Bow"));  // names repeat, compresses well
+
+        var raw = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(raw)) {
+            for (Dog dog : dogs) out.writeObject(dog);
+        }
+        System.out.printf("%-8s %,12d bytes%n", "raw", raw.size());
+
+        for (int round = 0; round < 2; round++) {  // first round warms up JIT, only second round is printed
+            for (int level : new int[] { Deflater.BEST_SPEED, 3, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION }) {
+                var compressed = new ByteArrayOutputStream();
+                long start = System.nanoTime();
+                try (var out = new ObjectOutputStream(new BlockOutputStream(compressed, deflate(level), DEFAULT_BLOCK_SIZE))) {
+                    for (Dog dog : dogs) out.writeObject(dog);
+                }
+                long writeNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int count = 0;
+                try (var in = new ObjectInputStream(new BlockInputStream(new ByteArrayInputStream(compressed.toByteArray())))) {
+                    for (int i = 0; i < dogs.size(); i++) if (in.readObject() instanceof Dog) count++;
+                }
+                long readNanos = System.nanoTime() - start;
+                if (round == 1) System.out.printf("level %2d %,12d bytes (%4.1f%%), write %,6d ms, read %,6d ms, %d dogs%n",
+                        level, compressed.size(), 100.0 * compressed.size() / raw.size(), writeNanos / 1_000_000, readNanos / 1_000_000, count);
+            }
+        }
+        // Lower level costs less CPU, higher level gives smaller file. Pick lowest level whose size is good enough for the disk/network.
+    }
+
+    static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    // Pluggable compression of a single block. Each codec has id written in block header, so reader knows how to decompress.
+    // Not thread-safe, each stream uses its own codec instance, and closes it when stream is closed.
+    interface BlockCodec extends AutoCloseable {
+        byte id();
+        byte[] compress(byte[] block, int length);
+        byte[] decompress(byte[] compressed, int rawLength) throws IOException;
+
+        // Releases native resources now instead of at garbage collection. Codec is not used after close().
+        @Override
+        default void close() {}
+    }
+
+    static final BlockCodec NONE = new BlockCodec() {
+        public byte id() { return 0; }
+        public byte[] compress(byte[] block, int length) { return Arrays.copyOf(block, length); }
+        public byte[] decompress(byte[] compressed, int rawLength) throws StreamCorruptedException {
+            if (compressed.length != rawLength) throw new StreamCorruptedException("Uncompressed block has " + compressed.length + " bytes, expected " + rawLength);
+            return compressed;
+        }
+    };
+
+    static BlockCodec deflate(int level) {
+        return new DeflateCodec(level);
+    }
+
+    // Deflater & Inflater hold native memory and are costly to create, so one of each is reused for every block, with reset() between blocks.
+    // close() calls end(), which releases native memory right away. Without it, memory is held until GC runs their Cleaner.
+    private static class DeflateCodec implements BlockCodec {
+        private final int level;
+        private Deflater deflater;  // created on first use, reader never needs it
+        private Inflater inflater;  // created on first use, writer never needs it
+
+        DeflateCodec(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public byte id() { return 1; }
+
+        @Override
+        public byte[] compress(byte[] block, int length) {
+            if (deflater == null) deflater = new Deflater(level);
+            deflater.reset();
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+            var out = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+            return out.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] compressed, int rawLength) throws IOException {
+            if (inflater == null) inflater = new Inflater();
+            inflater.reset();
+            try {
+                inflater.setInput(compressed);
+                byte[] block = new byte[rawLength];
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(block, n, rawLength - n);
+                    if (inflated == 0 && inflater.needsInput()) break;
+                    n += inflated;
+                }
+                if (n != rawLength) throw new StreamCorruptedException("Block inflated to " + n + " bytes, expected " + rawLength);
+                return block;
+            } catch (DataFormatException e) {
+                throw new StreamCorruptedException("Invalid compressed block: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (deflater != null) deflater.end();
+            if (inflater != null) inflater.end();
+            deflater = null;
+            inflater = null;
+        }
+    }
+
+    // Codec id -> factory of codec that decompresses blocks with that id. New codec is added by register(), no change here.
+    private static final Map<Byte, Supplier<BlockCodec>> codecs = new ConcurrentHashMap<>();
+    static {
+        register((byte) 0, () -> NONE);
+        register((byte) 1, () -> deflate(Deflater.DEFAULT_COMPRESSION));  // level only matters for compressing
+    }
+
+    static void register(byte id, Supplier<BlockCodec> factory) {
+        if (codecs.putIfAbsent(id, factory) != null) throw new IllegalArgumentException("Codec id already registered: " + id);
+    }
+
+    static BlockCodec codec(byte id) throws StreamCorruptedException {
+        Supplier<BlockCodec> factory = codecs.get(id);
+        if (factory == null) throw new StreamCorruptedException("Unknown codec: " + id);
+        return factory.get();
+    }
+
+    // Collects written bytes into block, compresses and writes full block to underlying stream. Closing it also closes codec.
+    static class BlockOutputStream extends FilterOutputStream {
+        private final BlockCodec codec;
+        private final byte[] block;
+        private int length;
+
+        BlockOutputStream(OutputStream out, BlockCodec codec, int blockSize) {
+            super(new DataOutputStream(out));
+            this.codec = codec;
+            this.block = new byte[blockSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == block.length) writeBlock();
+            block[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {  // FilterOutputStream writes byte by byte by default
+            while (len > 0) {
+                if (length == block.length) writeBlock();
+                int n = Math.min(len, block.length - length);
+                System.arraycopy(b, off, block, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        // Flush writes partial block. Flushing often makes blocks small, which compress worse.
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();  // flushes last block, then closes underlying stream
+            } finally {
+                codec.close();
+            }
+        }
+
+        private void writeBlock() throws IOException {
+            if (length == 0) return;
+            byte[] compressed = codec.compress(block, length);
+            var data = (DataOutputStream) out;
+            data.writeByte(codec.id());
+            data.writeInt(length);
+            data.writeInt(compressed.length);
+            data.write(compressed);
+            length = 0;
+        }
+    }
+
+    // Reads one block at a time from underlying stream and hands out its decompressed bytes.
+    static class BlockInputStream extends FilterInputStream {
+        private final BlockCodec[] codecs = new BlockCodec[256];  // codec per id, created when first block with that id is read
+        private byte[] block = new byte[0];
+        private int position;
+
+        BlockInputStream(InputStream in) {
+            super(new DataInputStream(in));
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (position == block.length) {
+                if (!readBlock()) return -1;
+            }
+            return block[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (position == block.length) {  // loop skips empty blocks
+                if (!readBlock()) return -1;
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return block.length - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                for (BlockCodec codec : codecs) {
+                    if (codec != null) codec.close();
+                }
+                Arrays.fill(codecs, null);
+            }
+        }
+
+        private boolean readBlock() throws IOException {
+            var data = (DataInputStream) in;
+            int id = data.read();
+            if (id == -1) return false;  // clean end of stream, between blocks
+            try {
+                int rawLength = data.readInt();
+                int compressedLength = data.readInt();
+                if (rawLength < 0 || compressedLength < 0) throw new StreamCorruptedException("Invalid block lengths: " + rawLength + ", " + compressedLength);
+                byte[] compressed = new byte[compressedLength];
+                data.readFully(compressed);
+                if (codecs[id] == null) codecs[id] = codec((byte) id);
+                block = codecs[id].decompress(compressed, rawLength);
+                position = 0;
+                return true;
+            } catch (EOFException e) {
+                throw new StreamCorruptedException("Truncated block");
+            }
+        }
+    }
+
+}
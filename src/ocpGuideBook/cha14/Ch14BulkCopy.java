@@ -0,0 +1,123 @@
+package ocpGuideBook.cha14;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+public class Ch14BulkCopy {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        // Copying many small files one at a time spends most time waiting on open/close/write, not copying.
+        // Running copies on many threads overlaps that waiting. Semaphore limits how many copies run at once,
+        //     so we do not run out of file handles.
+        // Virtual threads (Executors.newVirtualThreadPerTaskExecutor()) are final only from Java 21, so not on Java 17 exam.
+        //     Here a thread per task is taken from cached thread pool, which creates threads as needed and reuses idle ones.
+
+        Path srcDir = Files.createTempDirectory("ch14src");
+        Path destDir = Files.createTempDirectory("ch14dest");
+        try {
+            for (int i = 0; i < 500; i++) {
+                Path dir = Files.createDirectories(srcDir.resolve("dir" + (i % 10)));
+                Files.writeString(dir.resolve("file" + i + ".txt"), "line of file " + i + System.lineSeparator());
+            }
+
+            var bulkCopy = new Ch14BulkCopy(32);
+            Report report = bulkCopy.copyDirectory(srcDir, destDir);
+            System.out.println(report);  // 500 files, 8,390 bytes in 322 ms (1,552.2 files/s, 0.0 MB/s), latency p50 <= 512 us, ... (varies by machine)
+        } finally {
+            deleteTree(srcDir);
+            deleteTree(destDir);
+        }
+    }
+
+    // deleteOnExit() is not enough for directories, they must be empty when deleted.
+    // walk() lists directory before its contents, so reverse order deletes contents first.
+    static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(path);
+        }
+    }
+
+    private final int maxConcurrency;
+    private final Ch14IOStreams io = new Ch14IOStreams();
+
+    Ch14BulkCopy(int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    // Copies every regular file under srcDir to same relative path under destDir, using Ch14IOStreams.copyPath.
+    Report copyDirectory(Path srcDir, Path destDir) throws IOException, InterruptedException {
+        var histogram = new LatencyHistogram();
+        var bytes = new AtomicLong();
+        var permits = new Semaphore(maxConcurrency);
+        var copies = new ArrayList<Future<?>>();
+        long start = System.nanoTime();
+
+        ExecutorService service = Executors.newCachedThreadPool();
+        try (Stream<Path> paths = Files.walk(srcDir)) {  // walk() is lazy and depth-first. Stream must be closed.
+            for (Path source : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                Path target = destDir.resolve(srcDir.relativize(source));
+                permits.acquire();  // blocks when maxConcurrency copies are running
+                try {
+                    copies.add(service.submit(() -> {
+                        try {
+                            long fileStart = System.nanoTime();
+                            Files.createDirectories(target.getParent());
+                            io.copyPath(source, target);
+                            histogram.record(System.nanoTime() - fileStart);
+                            bytes.addAndGet(Files.size(target));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {  // RejectedExecutionException, task will never release
+                    permits.release();
+                    throw e;
+                }
+            }
+            waitAll(copies);
+        } finally {
+            service.shutdown();
+        }
+        return new Report(copies.size(), bytes.get(), System.nanoTime() - start, histogram);
+    }
+
+    private static void waitAll(List<Future<?>> copies) throws IOException, InterruptedException {
+        IOException failure = null;
+        for (Future<?> copy : copies) {
+            try {
+                copy.get();
+            } catch (ExecutionException e) {  // keep waiting for the rest, report first failure with others suppressed
+                IOException cause = e.getCause() instanceof UncheckedIOException u ? u.getCause() : new IOException(e.getCause());
+                if (failure == null) failure = cause;
+                else failure.addSuppressed(cause);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    record Report(long files, long bytes, long nanos, LatencyHistogram latency) {
+        public String toString() {
+            double seconds = nanos / 1_000_000_000.0;
+            return String.format("%,d files, %,d bytes in %,d ms (%,.1f files/s, %,.1f MB/s), latency p50 <= %,d us, p90 <= %,d us, p99 <= %,d us",
+                    files, bytes, nanos / 1_000_000, files / seconds, bytes / seconds / (1024 * 1024),
+                    latency.percentileUpperBound(50), latency.percentileUpperBound(90), latency.percentileUpperBound(99));
+        }
+    }
+
+}
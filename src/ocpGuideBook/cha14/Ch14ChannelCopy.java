@@ -0,0 +1,132 @@
+package ocpGuideBook.cha14;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class Ch14ChannelCopy {
+
+    public static void main(String[] args) throws IOException {
+
+        // java.nio.channels.Channel is NIO (non-blocking I/O) counterpart of I/O stream. Channel reads/writes ByteBuffer instead of byte[].
+        // FileInputStream, FileOutputStream and RandomAccessFile have getChannel() that returns FileChannel of same file.
+        // FileChannel.transferTo(position, count, target) lets OS copy bytes directly between files (sendfile on Linux),
+        //     bytes never pass through Java heap. This is called zero-copy.
+        // For other streams, Channels.newChannel(stream) wraps InputStream/OutputStream as ReadableByteChannel/WritableByteChannel.
+
+        // Direct ByteBuffer is allocated outside of Java heap, so OS can read/write it without extra copying.
+        // It is expensive to allocate, so reuse (pool) them instead of allocating per copy.
+
+        File src = File.createTempFile("ch14src", ".data");
+        File dest = File.createTempFile("ch14dest", ".data");
+        src.deleteOnExit();
+        dest.deleteOnExit();
+        byte[] data = new byte[4 * 1024 * 1024];  // 4 MB of random bytes
+        new Random(14).nextBytes(data);
+        try (var out = new FileOutputStream(src)) {
+            out.write(data);
+        }
+
+        var io = new Ch14IOStreams();
+        CopyResult result;
+
+        try (var in = new FileInputStream(src); var out = new FileOutputStream(dest)) {
+            long start = System.nanoTime();
+            io.copyStream(in, out);  // byte at a time
+            System.out.println("copyStream:           " + new CopyResult(data.length, System.nanoTime() - start, false));
+        }
+        try (var in = new FileInputStream(src); var out = new FileOutputStream(dest)) {
+            long start = System.nanoTime();
+            io.copyStreamWithBuffer(in, out);  // 1024 bytes at a time
+            System.out.println("copyStreamWithBuffer: " + new CopyResult(data.length, System.nanoTime() - start, false));
+        }
+        try (var in = new FileInputStream(src); var out = new FileOutputStream(dest)) {
+            result = copy(in, out);  // both are files, uses transferTo
+            System.out.println("copy (file to file):  " + result);
+        }
+        try (var in = new ByteArrayInputStream(data); var out = new ByteArrayOutputStream(data.length)) {
+            result = copy(in, out);  // not files, uses pooled direct buffer
+            System.out.println("copy (memory):        " + result);
+        }
+    }
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(8);  // pool keeps at most 8 idle buffers
+
+    // Number of bytes copied, time taken, and whether zero-copy path was used.
+    record CopyResult(long bytes, long nanos, boolean zeroCopy) {
+        double bytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1_000_000_000.0 / nanos;
+        }
+
+        public String toString() {
+            return String.format("%,d bytes in %,d us (%,.1f MB/s)%s", bytes, nanos / 1000, bytesPerSecond() / (1024 * 1024), zeroCopy ? " zero-copy" : "");
+        }
+    }
+
+    // Uses zero-copy when both ends are file-backed, otherwise falls back to direct buffer loop. Does not close the streams.
+    static CopyResult copy(InputStream in, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        if (in instanceof FileInputStream fin && out instanceof FileOutputStream fout) {
+            long bytes = transfer(fin.getChannel(), fout.getChannel());
+            return new CopyResult(bytes, System.nanoTime() - start, true);
+        }
+        out.flush();  // anything already buffered in out should go before what we write through the channel.
+        long bytes = copy(Channels.newChannel(in), Channels.newChannel(out));  // closing these channels would close the streams, so don't.
+        return new CopyResult(bytes, System.nanoTime() - start, false);
+    }
+
+    // Copies from current position of in to current position of out, and advances both positions like a stream would.
+    static long transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+        long total = 0;
+        while (position < size) {  // transferTo may copy fewer bytes than requested, so loop.
+            long n = in.transferTo(position, size - position, out);
+            if (n <= 0) break;  // file was truncated while copying
+            position += n;
+            total += n;
+        }
+        in.position(position);
+        return total;
+    }
+
+    static long copy(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = borrow();
+        long total = 0;
+        try {
+            while (in.read(buffer) != -1) {  // read() fills buffer from its position up to its limit.
+                buffer.flip();  // flip() sets limit to position and position to 0, ready to be drained.
+                while (buffer.hasRemaining()) total += out.write(buffer);
+                buffer.clear();  // ready to be filled again.
+            }
+        } finally {
+            release(buffer);
+        }
+        return total;
+    }
+
+    private static ByteBuffer borrow() {
+        ByteBuffer buffer = POOL.poll();  // poll() returns null instead of blocking when pool is empty.
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private static void release(ByteBuffer buffer) {
+        buffer.clear();
+        POOL.offer(buffer);  // offer() returns false when pool is full. The extra buffer is left for GC.
+    }
+
+}
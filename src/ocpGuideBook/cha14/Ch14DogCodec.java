@@ -0,0 +1,109 @@
+package ocpGuideBook.cha14;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Ch14DogCodec {
+
+    public static void main(String[] args) throws IOException {
+
+        // ObjectOutputStream writes class descriptor (class name, serialVersionUID, field names and types) into the stream,
+        //     and uses reflection to read/write fields. Flexible, but big and slow for millions of small records.
+        // Schema-based codec knows the fields in advance, so it writes only values:
+        //     name as length-prefixed UTF-8 bytes, age as varint (1 byte for 0 to 127 instead of fixed 4 bytes).
+        // transient temp is not written, and is null after decoding, same as Java serialization.
+
+        var dogs = new ArrayList<Dog>();
+        for (int i = 0; i < 100_000; i++) dogs.add(new Dog("Puppy" + (i % 100), i % 20, "Bow"));
+
+        ByteBuffer encoded = encodeAll(dogs);
+        List<Dog> decoded = decodeAll(encoded.flip());
+        System.out.println(decoded.get(1) + ", temp = " + decoded.get(1).temp);  // Puppy1 of age 1, temp = null
+        System.out.println(decoded.toString().equals(dogs.toString()));  // true
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            for (Dog dog : dogs) out.writeObject(dog);  // same as Ch14Serialization.saveToFile
+        }
+        System.out.println("codec: " + encoded.limit() + " bytes, serialization: " + bytes.size() + " bytes");  // codec: 890003 bytes, serialization: 1990071 bytes
+    }
+
+    // Encodes dog at buffer position. Throws BufferOverflowException when buffer does not have enough space.
+    static void encode(Dog dog, ByteBuffer buffer) {
+        if (dog.name == null) {
+            writeVarint(buffer, 0);  // 0 means null, otherwise length + 1
+        } else {
+            byte[] name = dog.name.getBytes(StandardCharsets.UTF_8);
+            writeVarint(buffer, name.length + 1);
+            buffer.put(name);
+        }
+        writeVarint(buffer, zigZag(dog.age));  // temp is transient, not written
+    }
+
+    static Dog decode(ByteBuffer buffer) {
+        var dog = new Dog();
+        int length = readVarint(buffer);
+        if (length > 0) {
+            byte[] name = new byte[length - 1];
+            buffer.get(name);
+            dog.name = new String(name, StandardCharsets.UTF_8);
+        }
+        dog.age = unZigZag(readVarint(buffer));
+        return dog;
+    }
+
+    // Encodes dogs into a new buffer, preceded by number of dogs. Buffer is doubled and encoding retried when it is too small.
+    static ByteBuffer encodeAll(List<Dog> dogs) {
+        var buffer = ByteBuffer.allocate(Math.max(64, dogs.size() * 16));
+        writeVarint(buffer, dogs.size());
+        for (Dog dog : dogs) {
+            while (true) {
+                int mark = buffer.position();
+                try {
+                    encode(dog, buffer);
+                    break;
+                } catch (BufferOverflowException e) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip().limit(mark));  // keep what is already encoded
+                }
+            }
+        }
+        return buffer;
+    }
+
+    static List<Dog> decodeAll(ByteBuffer buffer) {
+        int count = readVarint(buffer);
+        var dogs = new ArrayList<Dog>(count);
+        for (int i = 0; i < count; i++) dogs.add(decode(buffer));
+        return dogs;
+    }
+
+    // Varint stores 7 bits per byte, high bit set means more bytes follow. Small numbers take fewer bytes.
+    static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;  // high bit not set, last byte
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    // ZigZag maps signed to unsigned so small negative numbers also take few bytes: 0, -1, 1, -2 -> 0, 1, 2, 3
+    static int zigZag(int n) { return (n << 1) ^ (n >> 31); }
+    static int unZigZag(int n) { return (n >>> 1) ^ -(n & 1); }
+
+}
@@ -9,6 +9,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -17,6 +18,10 @@ import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Stream;
 
 public class Ch14IOStreams {
@@ -48,7 +53,7 @@ public class Ch14IOStreams {
         
     }
     
-    // Reading & writing a byte at a time. Not very efficient.
+    // Reading & writing a byte at a time. Not very efficient. (See Ch14ChannelCopy for zero-copy with FileChannel.)
     void copyStream(InputStream in, OutputStream out) throws IOException {  // java.io.InputStream is not java.util.stream.Stream;
         int b;
         while ((b = in.read()) != -1) {  // read() reads & returns next byte of data as int or -1 to indicate end of stream
@@ -72,6 +77,7 @@ public class Ch14IOStreams {
             out.write(buffer, 0, lengthRead);  // writes exact length of byte from buffer (from offset), to this output stream
             out.flush();  // Flush to reduce amount of data lost if application terminates unexpectedly before write completes.
             // Flush requests that all accumulated data be written immediately to disk, with performance cost.
+            // See Ch14AdaptiveCopy for growing buffer and flushing by byte or time threshold.
         }
     }
     
@@ -97,6 +103,7 @@ public class Ch14IOStreams {
     }  // System.out is PrintStream object, which also has println() method.
     
     // Using NIO.2 Files. Following three methods read all at once, may throw OutOfMemoryError on large file. Closes file when all read.
+    // (See streaming versions below, which read fixed-size chunks instead.)
     void copyPathAsString(Path input, Path output) throws IOException {
         String string = Files.readString(input);  // Reads all content from a file into a String, decoding bytes to characters.
         Files.writeString(output, string);  // Write a CharSequence to a file.
@@ -112,6 +119,70 @@ public class Ch14IOStreams {
         Files.write(output, lines);  //  From string array, write lines of text to a file
     }
     
+    // Streaming versions of above three methods. Peak memory is size of chunk (or queue), not size of file.
+    static final int CHUNK_SIZE = 8192;
+    static final int LINE_QUEUE_SIZE = 1024;
+    
+    void copyPathAsStringChunked(Path input, Path output) throws IOException {
+        try (var reader = Files.newBufferedReader(input); var writer = Files.newBufferedWriter(output)) {  // decodes bytes to characters, like readString
+            var chunk = new char[CHUNK_SIZE];
+            int lengthRead;
+            while ((lengthRead = reader.read(chunk, 0, CHUNK_SIZE)) > 0) {  // Reader reads char[] instead of byte[]
+                writer.write(chunk, 0, lengthRead);
+            }
+        }
+    }
+    
+    void copyPathAsBytesChunked(Path input, Path output) throws IOException {
+        try (var in = Files.newInputStream(input); var out = Files.newOutputStream(output)) {  // no decoding, bytes are copied as they are
+            var chunk = new byte[CHUNK_SIZE];
+            int lengthRead;
+            while ((lengthRead = in.read(chunk, 0, CHUNK_SIZE)) > 0) {
+                out.write(chunk, 0, lengthRead);
+            }
+        }
+    }
+    
+    // Reader thread puts lines into bounded queue, calling thread takes and writes them.
+    // put() blocks when queue is full, so reader can never get more than LINE_QUEUE_SIZE lines ahead of writer.
+    void copyPathAsLinesQueued(Path input, Path output) throws IOException {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(LINE_QUEUE_SIZE);
+        Object endOfFile = new Object();  // marker object, null cannot be put into BlockingQueue
+        var readerTask = new FutureTask<Void>(() -> {
+            boolean endQueued = false;
+            try (var reader = Files.newBufferedReader(input)) {
+                String line;
+                while ((line = reader.readLine()) != null) queue.put(line);
+                queue.put(endOfFile);
+                endQueued = true;
+                return null;  // Callable<Void> must return null
+            } finally {
+                if (!endQueued) {  // any failure, also Error (OutOfMemoryError on huge line) or interrupt: tell writer to stop, get() rethrows it
+                    queue.clear();  // copy fails anyway, lines not yet written are dropped. Makes room so offer() cannot fail.
+                    queue.offer(endOfFile);
+                }
+            }
+        });
+        new Thread(readerTask).start();
+        try (var writer = Files.newBufferedWriter(output)) {
+            Object line;
+            while ((line = queue.take()) != endOfFile) {
+                writer.write((String) line);
+                writer.newLine();
+            }
+            readerTask.get();  // rethrows exception of reader thread, if any
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while copying " + input);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) throw ioe;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IOException(e.getCause());
+        } finally {
+            readerTask.cancel(true);  // interrupts reader blocked on put() if writer failed. Does nothing if already done.
+        }
+    }
+    
     // Instead of reading all at once, lines(Path) reads lines as it outputs to Stream<String>.
     void readLazily(Path path) throws IOException {  // Read all lines from a file as a Stream, decoding bytes to characters.
         try (Stream<String> s = Files.lines(path)) {  // The returned stream contains a reference to an open file. The file is closed by closing the stream. 
@@ -119,6 +190,7 @@ public class Ch14IOStreams {
         }
         
         try (var s = Files.lines(path)) {  // filter line that starts with WARNING:, write out warning message.
+            // Every line is decoded into String before filter. See Ch14MappedLineScanner for matching prefix on mapped bytes.
             s.filter(f -> f.startsWith("WARNING:"))
             .map(f -> f.substring(8))
             .forEach(System.out::println);
@@ -134,6 +206,7 @@ public class Ch14IOStreams {
                 writer.newLine();  // writes new line
             }
         }  // This is more concise than var reader = new BufferedReader(new FileReader(File))
+        // Single thread decodes every line. See Ch14SegmentedReader for decoding newline-aligned segments on ForkJoinPool.
     }
     
     
@@ -0,0 +1,158 @@
+package ocpGuideBook.cha14;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Ch14MappedLineScanner {
+
+    public static void main(String[] args) throws IOException {
+
+        // Files.lines(path) decodes every line into a String, even the lines filter() throws away right after.
+        // FileChannel.map() maps file into memory (MappedByteBuffer). OS pages file in as bytes are touched, nothing is copied to Java heap.
+        // Scanning bytes for '\n' and comparing prefix bytes directly means only matching lines are decoded into String.
+        // A single mapping can be at most Integer.MAX_VALUE bytes (about 2 GB), so larger file is mapped as several regions of about 1 GB.
+        // Region is extended to the end of its last line, so it stays below the mapping limit and no line is cut in two.
+        // Regions are independent, so they can be scanned in parallel, on a pool of parallelism threads.
+        // Matching '\n' and prefix as bytes needs charset that encodes ASCII as same single bytes (UTF-8, ISO-8859-1...), not UTF-16/32.
+
+        Path log = Files.createTempFile("ch14", ".log");
+        log.toFile().deleteOnExit();
+        Files.write(log, List.of("INFO: started", "WARNING: low disk", "INFO: working", "WARNING: high load", "ERROR: crashed"));
+
+        var scanner = new Ch14MappedLineScanner("WARNING:", StandardCharsets.UTF_8);
+        System.out.println(scanner.scan(log, 4));  // [ low disk,  high load]  same as readLazily() filter & substring(8)
+    }
+
+    static final int MAX_REGION = 1 << 30;  // well below mapping limit, leaves room to extend region to next '\n'
+    static final long MAPPING_LIMIT = Integer.MAX_VALUE;
+
+    private final byte[] prefix;
+    private final Charset charset;
+
+    Ch14MappedLineScanner(String prefix, Charset charset) {
+        if (!isAsciiCompatible(charset)) throw new IllegalArgumentException("Charset is not ASCII-compatible: " + charset);
+        this.prefix = prefix.getBytes(charset);
+        this.charset = charset;
+    }
+
+    // Every ASCII character must encode to its own single byte, so bytes of '\n' and of ASCII prefix mean the same as in ASCII.
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) return false;
+        var ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) ascii[i] = (byte) i;
+        return Arrays.equals(ascii, new String(ascii, StandardCharsets.US_ASCII).getBytes(charset));
+    }
+
+    // Returns remainder of each line that starts with prefix, in file order. Scans up to parallelism regions at once.
+    // File is split into at least parallelism regions, more when regions would be larger than MAX_REGION.
+    List<String> scan(Path path, int parallelism) throws IOException {
+        if (parallelism <= 0) throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> regions = splitAtNewlines(channel, parallelism, MAX_REGION);
+            ExecutorService service = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, regions.size())));
+            try {
+                var scans = new ArrayList<Future<List<String>>>(regions.size());
+                for (long[] region : regions) scans.add(service.submit(() -> scanRegion(channel, region[0], region[1])));
+                var matches = new ArrayList<String>();
+                for (Future<List<String>> scan : scans) matches.addAll(scan.get());  // in region order, so in file order
+                return matches;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while scanning " + path);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioe) throw ioe;
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                if (e.getCause() instanceof Error error) throw error;
+                throw new IOException(e.getCause());
+            } finally {
+                service.shutdownNow();  // after a failure, other regions need not be scanned
+            }
+        }
+    }
+
+    private List<String> scanRegion(FileChannel channel, long start, long end) throws IOException {
+        var matches = new ArrayList<String>();
+        if (start == end) return matches;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;  // absolute get() does not move position
+            if (startsWithPrefix(buffer, lineStart, lineEnd)) {
+                int textEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;  // strip \r of \r\n
+                matches.add(decode(buffer, lineStart + prefix.length, textEnd));
+            }
+            if (lineEnd == limit) break;  // last line without '\n'. lineEnd + 1 could overflow
+            lineStart = lineEnd + 1;
+        }
+        return matches;
+    }
+
+    private boolean startsWithPrefix(ByteBuffer buffer, int from, int to) {
+        if (to - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(from + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private String decode(ByteBuffer buffer, int from, int to) {
+        if (to <= from) return "";
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);  // absolute bulk get (Java 13+)
+        return new String(bytes, charset);
+    }
+
+    // Splits file into about parts byte ranges [start, end), each ending right after '\n' (or at end of file).
+    // Each range is about maxRegion bytes or less, plus the rest of its last line. Lines are never cut.
+    // Also used by Ch14SegmentedReader.
+    static List<long[]> splitAtNewlines(FileChannel channel, int parts, long maxRegion) throws IOException {
+        long size = channel.size();
+        long target = Math.max(1, Math.min(maxRegion, (size + parts - 1) / Math.max(1, parts)));
+        var regions = new ArrayList<long[]>();
+        var probe = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            end = nextLineStart(channel, end, size, probe);
+            if (end - start > MAPPING_LIMIT) {
+                throw new IOException("Line near offset " + start + " makes region longer than " + MAPPING_LIMIT + " bytes");
+            }
+            regions.add(new long[] { start, end });
+            start = end;
+        }
+        return regions;
+    }
+
+    // Returns position right after next '\n' at or after from, or size when there is none.
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer probe) throws IOException {
+        long position = from == 0 ? 0 : from - 1;  // if byte before from is '\n', from is already line start
+        while (position < size) {
+            probe.clear();
+            int n = channel.read(probe, position);  // positional read does not change channel position, safe to share channel
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (probe.get(i) == '\n') return position + i + 1;
+            }
+            position += n;
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,111 @@
+package ocpGuideBook.cha14;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.UnaryOperator;
+
+public class Ch14SegmentedReader {
+
+    public static void main(String[] args) throws IOException {
+
+        // copyTextFile, copyTextFile2 and copyPath decode and write lines with one readLine() loop on one thread.
+        // Instead, file can be cut into byte ranges (segments) that end right after '\n'.
+        // Each segment is decoded and transformed on ForkJoinPool, then lines are written back in segment order.
+        // Cutting at '\n' byte is safe for UTF-8 and single-byte charsets, because '\n' byte never appears inside multibyte character.
+        //     (Not safe for UTF-16, where '\n' is two bytes.)
+
+        Path input = Files.createTempFile("ch14in", ".txt");
+        Path output = Files.createTempFile("ch14out", ".txt");
+        input.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        var lines = new ArrayList<String>();
+        for (int i = 0; i < 100_000; i++) lines.add("line " + i);
+        Files.write(input, lines);
+
+        var reader = new Ch14SegmentedReader(ForkJoinPool.commonPool(), 64 * 1024, StandardCharsets.UTF_8);
+        long written = reader.transform(input, output, String::toUpperCase);
+        System.out.println(written);  // 100000
+        System.out.println(Files.readAllLines(output).get(99_999));  // LINE 99999  (order is kept)
+    }
+
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+    private final Charset charset;
+
+    // segmentSize is target bytes per segment. At most pool parallelism * 2 segments are held in memory at a time.
+    Ch14SegmentedReader(ForkJoinPool pool, int segmentSize, Charset charset) {
+        if (segmentSize <= 0) throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+        this.charset = charset;
+    }
+
+    // Same as copyPath when transform is UnaryOperator.identity(). Returns number of lines written.
+    long transform(Path input, Path output, UnaryOperator<String> transform) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+                BufferedWriter writer = Files.newBufferedWriter(output, charset)) {
+            long size = channel.size();
+            int parts = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (size + segmentSize - 1) / segmentSize));
+            List<long[]> segments = Ch14MappedLineScanner.splitAtNewlines(channel, parts, Ch14MappedLineScanner.MAX_REGION);  // segment ends at end of line, even past segmentSize
+            int window = pool.getParallelism() * 2;
+
+            Deque<ForkJoinTask<List<String>>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            long written = 0;
+            while (next < segments.size() || !inFlight.isEmpty()) {
+                while (next < segments.size() && inFlight.size() < window) {  // keep window of segments being decoded
+                    long[] segment = segments.get(next++);
+                    inFlight.addLast(pool.submit(() -> decode(channel, segment[0], segment[1], transform)));
+                }
+                try {
+                    for (String line : inFlight.removeFirst().join()) {  // join oldest segment first, to keep order
+                        writer.write(line);
+                        writer.newLine();
+                        written++;
+                    }
+                } catch (UncheckedIOException e) {
+                    inFlight.forEach(task -> task.cancel(true));
+                    throw e.getCause();
+                }
+            }
+            return written;
+        }
+    }
+
+    private List<String> decode(FileChannel channel, long start, long end, UnaryOperator<String> transform) {
+        var buffer = ByteBuffer.allocate((int) (end - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;  // positional read, safe to share channel across threads
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String text = new String(buffer.array(), 0, buffer.position(), charset);
+        var lines = new ArrayList<String>();
+        int lineStart = 0;
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = text.length();
+            int textEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;  // readLine() also strips \r\n
+            lines.add(transform.apply(text.substring(lineStart, textEnd)));
+            lineStart = lineEnd + 1;
+        }
+        return lines;
+    }
+
+}
@@ -2,16 +2,35 @@ package ocpGuideBook.cha14;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.Serializable;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
 
 public class Ch14Serialization {
     
@@ -46,6 +65,16 @@ public class Ch14Serialization {
         
         // When deserialize, Java do not call constructor of serialized class or its initializer,
         // instead it calls no-arg constructor of first non-serializable parent class (Object for Dog)
+        
+        saveToFileFramed(dogs, dogsFile);  // same objects, with header holding record count and checksum.
+        System.out.println(readFromFile(dogsFile));  // [Puppy of age 1, Pup of age 2]  readFromFile reads both formats.
+        
+        try (Stream<Dog> stream = streamFromFile(dogsFile)) {  // reads one Dog at a time, closes file when stream is closed.
+            System.out.println(stream.filter(d -> d.age > 1).count());  // 1
+        }
+        
+        saveToFile(dogs, dogsFile, Deflater.BEST_SPEED);  // compressed in blocks. See Ch14BlockCompression for level benchmark.
+        System.out.println(readFromFile(dogsFile));  // [Puppy of age 1, Pup of age 2]
     }
     
     // Serialization
@@ -55,10 +84,34 @@ public class Ch14Serialization {
         }
     }
     
+    // Serialization with block compression stage. Compression level is Deflater level (0 to 9, or -1 for default).
+    // Same header as framed format (count & checksum), with "DOGZ" magic. Payload after header is written in compressed blocks.
+    static void saveToFile(List<Dog> dogs, File dataFile, int compressionLevel) throws IOException {
+        writeFramed(dogs, dataFile, COMPRESSED_MAGIC,
+                file -> new Ch14BlockCompression.BlockOutputStream(file, Ch14BlockCompression.deflate(compressionLevel), Ch14BlockCompression.DEFAULT_BLOCK_SIZE));
+    }
+    
     // Deserialization
     static List<Dog> readFromFile(File dataFile) throws IOException, ClassNotFoundException {
+        try (var in = new BufferedInputStream(new FileInputStream(dataFile))) {
+            in.mark(4);  // remember position, so we can go back after peeking at first bytes
+            byte[] magic = in.readNBytes(4);  // fewer than 4 bytes if file is shorter, no exception
+            int format = magic.length == 4 ? ByteBuffer.wrap(magic).getInt() : 0;
+            if (format == FRAMED_MAGIC) return readFramed(new DataInputStream(in), in);
+            if (format == COMPRESSED_MAGIC) {
+                try (var blocks = new Ch14BlockCompression.BlockInputStream(in)) {  // closing it closes its codecs
+                    return readFramed(new DataInputStream(in), blocks);  // header, then blocks
+                }
+            }
+            in.reset();  // not framed, read from beginning as legacy stream
+            return readLegacy(in);
+        }
+    }
+    
+    // Legacy format written by saveToFile: objects only, number of objects is not known until EOFException.
+    private static List<Dog> readLegacy(InputStream stream) throws IOException, ClassNotFoundException {
         var dogs = new ArrayList<Dog>();
-        try (var in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(dataFile)))) {
+        try (var in = new ObjectInputStream(stream)) {
             while (true) {  // infinite loop until EOFException is thrown
                 var object = in.readObject();  // -1 or null would not have special meaning for reading object.
                 if (object instanceof Dog dog) dogs.add(dog);
@@ -69,23 +122,151 @@ public class Ch14Serialization {
         return dogs;
     }
     
-}
-
-class Dog implements Serializable {
-    private static final long serialVersionUID = 1L;  // good practice to have serialVersionUID, or get compiler warning
-    String name;
-    int age;
-    transient String temp;
+    // Framed format: header (magic, version, record count, CRC32 of payload), then payload written by ObjectOutputStream.
+    // Count is known before reading, so list is pre-sized and loop stops without EOFException. Checksum detects corrupted file.
+    static final int FRAMED_MAGIC = 0x444F4753;  // "DOGS". Legacy stream starts with 0xACED (ObjectStreamConstants.STREAM_MAGIC).
+    static final int FRAMED_VERSION = 1;
+    static final int COMPRESSED_MAGIC = 0x444F475A;  // "DOGZ", same header, payload in Ch14BlockCompression blocks. Checksum is of uncompressed payload.
+    static final int FRAMED_CHECKSUM_OFFSET = 12;  // magic (4) + version (4) + count (4)
+    
+    static void saveToFileFramed(List<Dog> dogs, File dataFile) throws IOException {
+        writeFramed(dogs, dataFile, FRAMED_MAGIC, file -> file);
+    }
+    
+    // payloadStage wraps file stream for bytes after header, e.g. compression.
+    private static void writeFramed(List<Dog> dogs, File dataFile, int magic, UnaryOperator<OutputStream> payloadStage) throws IOException {
+        var checksum = new CRC32();
+        try (var file = new BufferedOutputStream(new FileOutputStream(dataFile))) {
+            var header = new DataOutputStream(file);
+            header.writeInt(magic);
+            header.writeInt(FRAMED_VERSION);
+            header.writeInt(dogs.size());
+            header.writeLong(0);  // placeholder, checksum is not known until payload is written
+            header.flush();
+            // CheckedOutputStream updates checksum with every byte written.
+            // Closing out writes last partial block, if any, closes codec of compression stage, then closes file.
+            try (var out = new ObjectOutputStream(new CheckedOutputStream(payloadStage.apply(file), checksum))) {
+                for (Dog dog : dogs) out.writeObject(dog);
+            }
+        }
+        try (var file = new RandomAccessFile(dataFile, "rw")) {  // RandomAccessFile can seek back and overwrite placeholder
+            file.seek(FRAMED_CHECKSUM_OFFSET);
+            file.writeLong(checksum.getValue());
+        }
+    }
     
-    Dog() {}
+    private static List<Dog> readFramed(DataInputStream header, InputStream stream) throws IOException, ClassNotFoundException {
+        int version = header.readInt();
+        if (version != FRAMED_VERSION) throw new StreamCorruptedException("Unsupported version: " + version);
+        int count = header.readInt();
+        long expected = header.readLong();
+        if (count < 0) throw new StreamCorruptedException("Invalid record count: " + count);
+        
+        var checked = new CheckedInputStream(stream, new CRC32());
+        var dogs = new ArrayList<Dog>(count);  // pre-sized, no resizing while adding
+        var in = new ObjectInputStream(checked);  // not closed here, caller closes underlying stream
+        for (int i = 0; i < count; i++) {
+            if (in.readObject() instanceof Dog dog) dogs.add(dog);
+        }
+        while (checked.read() != -1) {}  // include any remaining payload byte in checksum. Returns -1 at end, no exception.
+        if (checked.getChecksum().getValue() != expected) throw new StreamCorruptedException("Checksum mismatch, file is corrupted");
+        return dogs;
+    }
     
-    Dog(String name, int age, String temp) {
-        this.name = name;
-        this.age = age;
-        this.temp = temp;
+    // Lazy deserialization: each Dog is read only when the Stream asks for next element, so memory does not grow with file size.
+    // Reads both formats. Caller must close the Stream (try-with-resources), which closes the file, like Files.lines().
+    // IOException while reading is thrown as UncheckedIOException, since Stream methods cannot throw checked exception.
+    static Stream<Dog> streamFromFile(File dataFile) throws IOException {
+        var in = new BufferedInputStream(new FileInputStream(dataFile));
+        try {
+            var iterator = new DogIterator(in);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(iterator::close);  // onClose() handler runs when Stream is closed
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
     }
     
-    public String toString() {
-        return name + " of age " + age;
+    private static class DogIterator implements Iterator<Dog> {
+        private final InputStream file;
+        private ObjectInputStream in;
+        private CheckedInputStream checked;  // null for legacy format
+        private long expectedChecksum;
+        private int remaining = -1;  // -1 for legacy format, where count is unknown
+        private Dog next;
+        private boolean done;
+        
+        DogIterator(BufferedInputStream file) throws IOException {
+            this.file = file;
+            file.mark(4);
+            byte[] magic = file.readNBytes(4);
+            int format = magic.length == 4 ? ByteBuffer.wrap(magic).getInt() : 0;
+            if (format == FRAMED_MAGIC || format == COMPRESSED_MAGIC) {
+                var header = new DataInputStream(file);
+                int version = header.readInt();
+                if (version != FRAMED_VERSION) throw new StreamCorruptedException("Unsupported version: " + version);
+                remaining = header.readInt();
+                expectedChecksum = header.readLong();
+                if (remaining < 0) throw new StreamCorruptedException("Invalid record count: " + remaining);
+                InputStream payload = format == COMPRESSED_MAGIC ? new Ch14BlockCompression.BlockInputStream(file) : file;
+                checked = new CheckedInputStream(payload, new CRC32());
+                in = new ObjectInputStream(checked);
+            } else {
+                file.reset();
+                try {
+                    in = new ObjectInputStream(file);
+                } catch (EOFException e) {  // empty legacy file
+                    done = true;
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null && !done) {
+                    if (remaining == 0) {  // framed format, all records read
+                        while (checked.read() != -1) {}
+                        if (checked.getChecksum().getValue() != expectedChecksum) throw new StreamCorruptedException("Checksum mismatch, file is corrupted");
+                        done = true;
+                    } else {
+                        Object object;
+                        try {
+                            object = in.readObject();
+                        } catch (EOFException e) {  // legacy format has no count, end is only known by EOFException (once per file)
+                            if (remaining > 0) throw e;
+                            done = true;
+                            break;
+                        }
+                        if (remaining > 0) remaining--;
+                        if (object instanceof Dog dog) next = dog;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new UncheckedIOException(new InvalidClassException(e.getMessage()));
+            }
+            return next != null;
+        }
+        
+        @Override
+        public Dog next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Dog dog = next;
+            next = null;
+            return dog;
+        }
+        
+        void close() {
+            try {
+                if (in != null) in.close();  // closes whole chain, including codecs of BlockInputStream, then file
+                else file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
+    
 }
@@ -0,0 +1,143 @@
+package ocpGuideBook.cha14;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class Ch14ShardedSerialization {
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+
+        // One ObjectOutputStream writes objects one after another on one thread.
+        // Splitting list into shards, each shard written to its own file by its own thread, uses more cores.
+        // Manifest (a .properties file) records shard files and record counts, so reader knows what to merge and in which order.
+
+        var dogs = new ArrayList<Dog>();
+        for (int i = 0; i < 100_000; i++) dogs.add(new Dog("Puppy" + i, i % 20, "Bow"));
+        File manifest = File.createTempFile("dogs", ".manifest");
+        manifest.deleteOnExit();
+        for (int i = 0; i < 4; i++) shardFile(manifest, i).deleteOnExit();
+
+        var sharded = new Ch14ShardedSerialization(4);
+        sharded.save(dogs, manifest);  // writes dogs.manifest, dogs.manifest.shard-0 ... dogs.manifest.shard-3
+        List<Dog> dogsFromFile = sharded.read(manifest);
+        System.out.println(dogsFromFile.size() + " " + dogsFromFile.get(99_999));  // 100000 Puppy99999 of age 19  (order is kept)
+    }
+
+    private final int shards;
+
+    Ch14ShardedSerialization(int shards) {
+        if (shards <= 0) throw new IllegalArgumentException("Invalid shard count: " + shards);
+        this.shards = shards;
+    }
+
+    // Deletes old manifest first, since its shard files are about to be overwritten. Writes each shard with
+    //     Ch14Serialization.saveToFileFramed, then writes manifest to temp file and moves it to manifestFile in one step.
+    //     So a manifest exists only when all its shards are complete, also after a failed save.
+    // Shard files of old manifest past the new shard count are deleted after the new manifest is in place.
+    void save(List<Dog> dogs, File manifestFile) throws IOException {
+        Files.deleteIfExists(manifestFile.toPath());
+        int shardCount = Math.max(1, Math.min(shards, dogs.size()));
+        int shardSize = (dogs.size() + shardCount - 1) / shardCount;
+        var manifest = new Properties();
+        var tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < shardCount; i++) {
+            List<Dog> shard = dogs.subList(Math.min(dogs.size(), i * shardSize), Math.min(dogs.size(), (i + 1) * shardSize));  // view, not copy
+            File shardFile = shardFile(manifestFile, i);
+            manifest.setProperty("shard." + i + ".file", shardFile.getName());
+            manifest.setProperty("shard." + i + ".count", String.valueOf(shard.size()));
+            tasks.add(() -> {
+                Ch14Serialization.saveToFileFramed(shard, shardFile);
+                return null;
+            });
+        }
+        manifest.setProperty("shards", String.valueOf(shardCount));
+        manifest.setProperty("count", String.valueOf(dogs.size()));
+        try {
+            runAll(tasks, shardCount);
+        } catch (ClassNotFoundException e) {  // cannot happen, writing does not load classes
+            throw new IOException(e);
+        }
+        File temp = File.createTempFile(manifestFile.getName(), ".tmp", manifestFile.getAbsoluteFile().getParentFile());  // same directory, so move can be atomic
+        try {
+            try (var writer = new FileWriter(temp)) {
+                manifest.store(writer, "Ch14ShardedSerialization manifest");
+            }
+            Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.ATOMIC_MOVE);  // readers see old file or whole new one
+        } finally {
+            Files.deleteIfExists(temp.toPath());  // only left when write or move failed
+        }
+        int stale = shardCount;
+        while (Files.deleteIfExists(shardFile(manifestFile, stale).toPath())) stale++;  // shards of an older save with more shards
+    }
+
+    // Reads shards in parallel and merges them in shard order into one pre-sized list.
+    List<Dog> read(File manifestFile) throws IOException, ClassNotFoundException {
+        var manifest = new Properties();
+        try (var reader = new FileReader(manifestFile)) {
+            manifest.load(reader);
+        }
+        int shardCount = intProperty(manifest, "shards");
+        var tasks = new ArrayList<Callable<List<Dog>>>();
+        for (int i = 0; i < shardCount; i++) {
+            File shardFile = new File(manifestFile.getParentFile(), manifest.getProperty("shard." + i + ".file"));
+            int expected = intProperty(manifest, "shard." + i + ".count");
+            tasks.add(() -> {
+                List<Dog> shard = Ch14Serialization.readFromFile(shardFile);
+                if (shard.size() != expected) throw new StreamCorruptedException(shardFile + " has " + shard.size() + " records, expected " + expected);
+                return shard;
+            });
+        }
+        var dogs = new ArrayList<Dog>(intProperty(manifest, "count"));
+        for (List<Dog> shard : runAll(tasks, shardCount)) dogs.addAll(shard);
+        return dogs;
+    }
+
+    static File shardFile(File manifestFile, int shard) {
+        return new File(manifestFile.getParentFile(), manifestFile.getName() + ".shard-" + shard);
+    }
+
+    private static int intProperty(Properties properties, String key) throws StreamCorruptedException {
+        String value = properties.getProperty(key);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {  // also thrown for null
+            throw new StreamCorruptedException("Invalid manifest entry " + key + "=" + value);
+        }
+    }
+
+    // Runs tasks on a thread per shard and returns results in task order. Rethrows IOException or ClassNotFoundException of a failed task.
+    private static <T> List<T> runAll(List<Callable<T>> tasks, int threads) throws IOException, ClassNotFoundException {
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<T>(tasks.size());
+            for (Future<T> future : service.invokeAll(tasks)) {  // invokeAll() waits until all tasks are done
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for shards");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) throw ioe;
+            if (e.getCause() instanceof ClassNotFoundException cnfe) throw cnfe;
+            throw new IOException(e.getCause());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package ocpGuideBook.cha14;
+
+import java.io.Serializable;
+
+class Dog implements Serializable {
+    private static final long serialVersionUID = 1L;  // good practice to have serialVersionUID, or get compiler warning
+    String name;
+    int age;
+    transient String temp;
+    
+    Dog() {}
+    
+    Dog(String name, int age, String temp) {
+        this.name = name;
+        this.age = age;
+        this.temp = temp;
+    }
+    
+    public String toString() {
+        return name + " of age " + age;
+    }
+}
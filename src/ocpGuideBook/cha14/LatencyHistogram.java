@@ -0,0 +1,32 @@
+package ocpGuideBook.cha14;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts latencies into power of two microsecond buckets: bucket i holds latencies < 2^i us.
+// Own file, so Ch14BulkCopy and Ch15QueryMetrics share it without depending on each other.
+public class LatencyHistogram {
+    private final AtomicLongArray buckets = new AtomicLongArray(40);
+    private final AtomicLong count = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(1, nanos / 1000);
+        int bucket = Math.min(buckets.length() - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+    }
+
+    public long count() { return count.get(); }
+
+    // Upper bound, in microseconds, of bucket that contains given percentile (0 to 100).
+    public long percentileUpperBound(double percentile) {
+        long total = count.get();
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) return 1L << i;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,124 @@
+package ocpGuideBook.cha15;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+public class Ch15AsyncJdbc implements AutoCloseable {
+
+    public static void main(String[] args) throws Exception {
+
+        /*
+        JDBC calls block the calling thread until database answers. To run several calls at the same time,
+        run each on another thread and get CompletableFuture, which completes when call is done.
+        Number of threads is bounded by connection pool size, since more threads would only wait for a connection.
+        (Java 21 virtual threads are cheap to block, so Executors.newVirtualThreadPerTaskExecutor() would fit here.
+        They are not in Java 17, so this uses fixed thread pool of platform threads.)
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (var pool = new Ch15ConnectionPool(url, 2, 8, 30_000, 5_000); var jdbc = new Ch15AsyncJdbc(pool, 8)) {
+            CompletableFuture<List<String>> exhibits = jdbc.query("SELECT name FROM exhibits", rs -> rs.getString("name"));
+            CompletableFuture<Integer> inserted = jdbc.update("INSERT INTO USERS VALUES(?, ?)", 2, "Tomato");
+            CompletableFuture<Integer> doubled = jdbc.call("{call double_number(?)}", cs -> {
+                cs.setInt(1, 8);
+                cs.registerOutParameter(1, Types.INTEGER);
+                cs.execute();
+                return cs.getInt(1);
+            });
+
+            CompletableFuture.allOf(exhibits, inserted, doubled).join();  // all three run at the same time. join() waits for all.
+            System.out.println(exhibits.join() + " " + inserted.join() + " " + doubled.join());  // [...] 1 16
+        }
+    }
+
+    // Work to do with prepared CallableStatement: set parameters, execute, read result.
+    @FunctionalInterface
+    interface CallableWork<T> {
+        T apply(CallableStatement cs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ConnectionWork<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private final ExecutorService executor;
+
+    // maxConcurrency should be pool's maxSize.
+    Ch15AsyncJdbc(DataSource dataSource, int maxConcurrency) {
+        this.dataSource = dataSource;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency);
+    }
+
+    // Rows are mapped on the worker thread and returned as list. For large results use Ch15ResultSetStream instead.
+    <T> CompletableFuture<List<T>> query(String sql, Ch15ResultSetStream.RowMapper<T> mapper, Object... params) {
+        return submit(conn -> {
+            try (var ps = conn.prepareStatement(sql)) {
+                setParameters(ps, params);
+                try (var rs = ps.executeQuery()) {
+                    var rows = new ArrayList<T>();
+                    while (rs.next()) rows.add(mapper.map(rs));
+                    return rows;
+                }
+            }
+        });
+    }
+
+    CompletableFuture<Integer> update(String sql, Object... params) {
+        return submit(conn -> {
+            try (var ps = conn.prepareStatement(sql)) {
+                setParameters(ps, params);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    <T> CompletableFuture<T> call(String sql, CallableWork<T> work) {
+        return submit(conn -> {
+            try (var cs = conn.prepareCall(sql)) {
+                return work.apply(cs);
+            }
+        });
+    }
+
+    // Gets connection on worker thread, so waiting for connection does not block caller either.
+    // SQLException completes future exceptionally, wrapped in CompletionException (join() throws it, get() throws ExecutionException).
+    private <T> CompletableFuture<T> submit(ConnectionWork<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection conn = dataSource.getConnection()) {
+                return work.apply(conn);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static void setParameters(PreparedStatement ps, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+    }
+
+    // Waits for submitted calls to finish. Does not close the DataSource.
+    @Override
+    public void close() {
+        executor.shutdown();  // no new calls, already submitted calls still run
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {}
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
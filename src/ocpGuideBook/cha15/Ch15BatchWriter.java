@@ -0,0 +1,154 @@
+package ocpGuideBook.cha15;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class Ch15BatchWriter<T> implements AutoCloseable {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        ps.executeUpdate() sends one row per round trip to database, and in auto-commit mode commits every row.
+        addBatch() queues current bind variables, executeBatch() sends all queued rows in one round trip,
+        and returns int[] of update counts (one per row).
+        With setAutoCommit(false), one commit per batch instead of one commit per row.
+        If batch fails, rollback() undoes the whole batch, so it can be retried as a unit.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        int rows = 100_000;
+        try (Connection conn = DriverManager.getConnection(url)) {
+            long start = System.nanoTime();
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO USERS VALUES(?, ?)")) {  // single-row path, as in Ch15JDBC
+                for (int userId = 1; userId <= rows; userId++) {
+                    ps.setInt(1, userId);
+                    ps.setString(2, "Potato" + userId);
+                    ps.executeUpdate();
+                }
+            }
+            System.out.printf("single row: %,.0f rows/s%n", rows * 1e9 / (System.nanoTime() - start));
+
+            try (var writer = new Ch15BatchWriter<User>(conn, "INSERT INTO USERS VALUES(?, ?)", 1000, 3, (ps, user) -> {
+                ps.setInt(1, user.id());
+                ps.setString(2, user.name());
+            })) {
+                for (int userId = rows + 1; userId <= rows * 2; userId++) writer.add(new User(userId, "Potato" + userId));
+                writer.flush();
+                System.out.printf("batch:      %,.0f rows/s, %s%n", writer.rowsPerSecond(), writer.stats());
+            }
+        }
+    }
+
+    record User(int id, String name) {}
+
+    // Sets bind variables of one row.
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    private final Connection conn;
+    private final PreparedStatement ps;
+    private final int batchSize;
+    private final int maxRetries;
+    private final Binder<T> binder;
+    private final boolean originalAutoCommit;
+    private final List<T> pending;  // rows of current batch, kept to re-bind on retry
+    private List<T> failedRows = List.of();
+
+    private long rowsWritten;
+    private long batches;
+    private long retries;
+    private long nanos;
+
+    // Retries each failed batch up to maxRetries times (SQLTransientException only, such as deadlock or timeout), then rethrows.
+    Ch15BatchWriter(Connection conn, String sql, int batchSize, int maxRetries, Binder<T> binder) throws SQLException {
+        if (batchSize <= 0 || maxRetries < 0) throw new IllegalArgumentException("Invalid batch size or retries: " + batchSize + ", " + maxRetries);
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.binder = binder;
+        this.pending = new ArrayList<>(batchSize);
+        this.originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);  // commit once per batch
+        this.ps = conn.prepareStatement(sql);
+    }
+
+    void add(T row) throws SQLException {
+        pending.add(row);
+        if (pending.size() >= batchSize) flush();
+    }
+
+    // Sends and commits rows added so far. If it fails for good, rows of the batch are dropped from writer and returned by failedRows().
+    void flush() throws SQLException {
+        if (pending.isEmpty()) return;
+        long start = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                for (T row : pending) {
+                    binder.bind(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+                break;
+            } catch (SQLException e) {
+                boolean retry = isRetryable(e) && attempt < maxRetries;
+                try {
+                    ps.clearBatch();
+                    conn.rollback();  // undo rows of this batch that were applied before failure
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                    retry = false;
+                }
+                if (!retry) {  // give up: hand rows back, so close() does not send them again
+                    failedRows = new ArrayList<>(pending);
+                    pending.clear();
+                    throw e;
+                }
+                retries++;
+            }
+        }
+        rowsWritten += pending.size();
+        batches++;
+        nanos += System.nanoTime() - start;
+        pending.clear();
+    }
+
+    private static boolean isRetryable(SQLException e) {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {  // BatchUpdateException may chain the real cause
+            if (cause instanceof SQLTransientException) return true;
+        }
+        return false;
+    }
+
+    long rowsWritten() { return rowsWritten; }
+
+    // Rows of last batch that could not be written, after retries.
+    List<T> failedRows() { return failedRows; }
+
+    double rowsPerSecond() {
+        return nanos == 0 ? 0 : rowsWritten * 1e9 / nanos;
+    }
+
+    String stats() {
+        return String.format("%,d rows in %,d batches, %,d retries", rowsWritten, batches, retries);
+    }
+
+    // Flushes remaining rows, closes statement and restores auto-commit mode of connection. Does not close the connection.
+    @Override
+    public void close() throws SQLException {
+        try (ps) {  // closed even if flush() throws
+            flush();
+        } finally {
+            pending.clear();
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+package ocpGuideBook.cha15;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+public class Ch15ConnectionPool implements DataSource, AutoCloseable {
+
+    public static void main(String[] args) throws Exception {
+
+        /*
+        DriverManager.getConnection(url) opens new physical connection (socket, login, session setup) every time. Closing it closes the socket.
+        Connection pool keeps physical connections open, and hands them out again.
+        Connection returned by pool is a wrapper. Calling close() on it returns physical connection to pool instead of closing it.
+        Code using DataSource does not change: try (Connection conn = dataSource.getConnection()) { ... }
+
+        minSize: connections kept open even when idle. maxSize: at most this many connections at once, others wait.
+        borrowTimeout: how long getConnection() waits when all maxSize connections are in use, then SQLTimeoutException.
+        idleTimeout: idle connection above minSize is closed after this long.
+        */
+
+        String url = "jdbc:hsqldb:mem:pooltest";  // in-memory HSQLDB, needs hsqldb jar on classpath
+        try (Connection conn = DriverManager.getConnection(url); var ps = conn.prepareStatement("CREATE TABLE IF NOT EXISTS exhibits (id INTEGER, name VARCHAR(255), num_acres DECIMAL(4,1))")) {
+            ps.executeUpdate();
+        }
+
+        int threads = 16, requests = 5_000;
+        long[] withoutPool = loadTest(() -> DriverManager.getConnection(url), threads, requests);
+        try (var pool = new Ch15ConnectionPool(url, 4, 16, 30_000, 5_000)) {
+            long[] withPool = loadTest(pool::getConnection, threads, requests);
+            System.out.printf("without pool: p50 %,d us, p99 %,d us%n", percentile(withoutPool, 50) / 1000, percentile(withoutPool, 99) / 1000);
+            System.out.printf("with pool:    p50 %,d us, p99 %,d us%n", percentile(withPool, 50) / 1000, percentile(withPool, 99) / 1000);
+            System.out.println(pool.metrics());
+        }
+    }
+
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    // Each request gets a connection, runs one query, closes connection. Returns latency of each request in nanoseconds.
+    static long[] loadTest(ConnectionSource source, int threads, int requests) throws Exception {
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        try {
+            var results = new ArrayList<Future<Long>>();
+            for (int i = 0; i < requests; i++) {
+                results.add(service.submit(() -> {
+                    long start = System.nanoTime();
+                    try (Connection conn = source.get(); var ps = conn.prepareStatement("SELECT COUNT(*) FROM exhibits"); var rs = ps.executeQuery()) {
+                        rs.next();
+                    }
+                    return System.nanoTime() - start;
+                }));
+            }
+            long[] latencies = new long[requests];
+            for (int i = 0; i < requests; i++) latencies[i] = results.get(i).get();
+            return latencies;
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    static long percentile(long[] values, double percentile) {
+        long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    private final String url;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds = 1;
+
+    private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<>();  // most recently returned first
+    private final Semaphore permits;  // one permit per connection that can be borrowed
+    private final AtomicInteger total = new AtomicInteger();  // physical connections open
+    private final AtomicInteger active = new AtomicInteger();  // borrowed, not yet returned
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+    private volatile int loginTimeoutSeconds;
+
+    private record Idle(Connection physical, long since) {}
+
+    Ch15ConnectionPool(String url, int minSize, int maxSize, long idleTimeoutMillis, long borrowTimeoutMillis) throws SQLException {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) throw new IllegalArgumentException("Invalid pool size: " + minSize + ", " + maxSize);
+        this.url = url;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);  // fair, so waiting threads are served in order
+        try {
+            for (int i = 0; i < minSize; i++) idle.addLast(new Idle(open(), System.nanoTime()));
+        } catch (SQLException | RuntimeException e) {
+            closeIdle();  // connections opened before the failure, nobody else can close them
+            throw e;
+        }
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);  // does not keep JVM running
+            return thread;
+        });
+        long period = Math.max(1, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("Pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("No connection available within " + borrowTimeoutMillis + " ms, active " + active.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        borrows.increment();
+
+        try {
+            Connection physical = null;
+            Idle candidate;
+            while (physical == null && (candidate = idle.pollFirst()) != null) {
+                if (isValid(candidate.physical())) physical = candidate.physical();  // validation on borrow
+                else closePhysical(candidate.physical());
+            }
+            if (physical == null) physical = open();
+            active.incrementAndGet();
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private boolean isValid(Connection physical) {
+        try {
+            return physical.isValid(validationTimeoutSeconds);  // driver runs lightweight check, e.g. ping
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection physical = DriverManager.getConnection(url);
+        total.incrementAndGet();
+        return physical;
+    }
+
+    private void closePhysical(Connection physical) {
+        total.decrementAndGet();
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // connection is being thrown away, nothing else to do
+        }
+    }
+
+    // Called when wrapper is closed. Physical connection goes back to idle before permit is released,
+    //     so the next borrower finds it instead of opening a new one.
+    private void release(Connection physical) {
+        active.decrementAndGet();
+        try {
+            if (!physical.getAutoCommit()) {  // do not leak uncommitted work to next borrower
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            idle.addFirst(new Idle(physical, System.nanoTime()));
+            if (closed) closeIdle();  // checked after add: close() may have drained idle before it
+        } catch (SQLException e) {
+            closePhysical(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Closes connections idle longer than idleTimeout, oldest first, keeping at least minSize open.
+    private void evictIdle() {
+        long now = System.nanoTime();
+        Iterator<Idle> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext() && total.get() > minSize) {
+            Idle candidate = oldestFirst.next();
+            if (now - candidate.since() < idleTimeoutNanos) break;  // rest are newer
+            if (idle.remove(candidate)) closePhysical(candidate.physical());  // remove() fails if borrower took it meanwhile
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        var handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {  // closing twice is allowed and does nothing, like real Connection
+                            returned = true;
+                            release(physical);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || physical.isClosed();
+                    case "toString":
+                        return "Pooled " + physical;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                }
+                if (returned) throw new SQLException("Connection is closed");
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();  // rethrow SQLException of driver as is
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    int activeCount() { return active.get(); }
+    int idleCount() { return idle.size(); }
+    int totalCount() { return total.get(); }
+
+    String metrics() {
+        long count = borrows.sum();
+        return String.format("borrows %,d, avg wait %,d us, max wait %,d us, timeouts %,d, active %d, idle %d, total %d/%d",
+                count, count == 0 ? 0 : waitNanos.sum() / count / 1000, maxWaitNanos.get() / 1000, timeouts.sum(), active.get(), idle.size(), total.get(), maxSize);
+    }
+
+    // Closes idle connections now. Borrowed connections are closed when they are returned.
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        Idle candidate;
+        while ((candidate = idle.pollFirst()) != null) closePhysical(candidate.physical());
+    }
+
+    // Remaining DataSource methods. Pool always uses url given to constructor.
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool connections use the pool's credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() { return null; }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {}
+
+    // Only stored. DriverManager.setLoginTimeout() is JVM-wide, it would change timeout of every other DriverManager user.
+    @Override
+    public void setLoginTimeout(int seconds) { loginTimeoutSeconds = seconds; }
+
+    @Override
+    public int getLoginTimeout() { return loginTimeoutSeconds; }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+}
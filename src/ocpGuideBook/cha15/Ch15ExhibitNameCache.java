@@ -0,0 +1,253 @@
+package ocpGuideBook.cha15;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class Ch15ExhibitNameCache {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        HashMap<Integer, String> boxes every int key into Integer object, and each entry is another object (HashMap.Node).
+        Open addressing map stores keys in int[] and values in String[] directly, no boxing, no node objects.
+        Key is hashed to a slot. If slot is taken by other key, next slot is tried (linear probing).
+
+        Read-through cache: get(id) returns cached name, or loads it from database and caches it.
+        TTL (time to live): cached name is reloaded after it is older than TTL.
+        Size bound: when full, CLOCK eviction removes an entry not read since the clock hand last passed it (approximate LRU).
+        Writes to exhibits must invalidate cached id, otherwise cache returns old name until TTL.
+        With auto-commit off, other connections see the write only after commit. get() before that loads old name again,
+        so id is not cached while its write is uncommitted, and caller calls endWrite(id) after commit() or rollback().
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (Connection conn = DriverManager.getConnection(url)) {
+            var cache = new Ch15ExhibitNameCache(() -> DriverManager.getConnection(url), 10_000, TimeUnit.MINUTES.toMillis(5));
+            System.out.println(cache.get(1));  // loaded from database
+            System.out.println(cache.get(1));  // from cache
+            cache.insertExhibit(conn, 10, "Deer", 3);  // invalidates id 10
+            cache.updateExhibitName(conn, 1, "African Elephant");  // invalidates id 1
+            System.out.println(cache.get(1));  // African Elephant, reloaded
+            System.out.println(cache.stats());  // hits 1, misses 2, evictions 0, expirations 0, size 1
+        }
+    }
+
+    interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private final ConnectionSource connections;
+    private final IntStringMap map;
+    private final long ttlNanos;
+    private long hits;
+    private long misses;
+    private long invalidations;  // changes whenever something is invalidated
+    private final Map<Integer, Integer> uncommittedWrites = new HashMap<>();  // id -> writes not ended by endWrite()
+
+    Ch15ExhibitNameCache(ConnectionSource connections, int maxSize, long ttlMillis) {
+        this.connections = connections;
+        this.map = new IntStringMap(maxSize);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    // Returns name of exhibit, or null if there is no such exhibit (not cached, so exhibit inserted later is found).
+    String get(int id) throws SQLException {
+        String name;
+        long invalidationsBeforeLoad;
+        synchronized (this) {
+            name = map.get(id, System.nanoTime());
+            if (name != null) {
+                hits++;
+                return name;
+            }
+            misses++;
+            invalidationsBeforeLoad = invalidations;
+        }
+        name = load(id);  // database call outside of lock, so other lookups are not blocked
+        if (name != null) {
+            synchronized (this) {
+                // Do not cache if invalidated while loading, loaded name may already be old.
+                if (invalidations == invalidationsBeforeLoad && !uncommittedWrites.containsKey(id)) map.put(id, name, System.nanoTime() + ttlNanos);
+            }
+        }
+        return name;
+    }
+
+    private String load(int id) throws SQLException {
+        try (Connection conn = connections.get(); var ps = conn.prepareStatement("SELECT name FROM exhibits WHERE id = ?")) {
+            ps.setInt(1, id);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("name") : null;
+            }
+        }
+    }
+
+    // Invalidation hooks. Call after any write to exhibits that changes name of id.
+    synchronized void invalidate(int id) {
+        invalidations++;
+        map.remove(id);
+    }
+
+    synchronized void invalidateAll() {
+        invalidations++;
+        map.clear();
+    }
+
+    // Call once per insertExhibit/updateExhibitName done with auto-commit off, after commit() or rollback() of its transaction.
+    // Invalidates again: name loaded between write and commit was the old one.
+    synchronized void endWrite(int id) {
+        uncommittedWrites.computeIfPresent(id, (key, writes) -> writes == 1 ? null : writes - 1);
+        invalidate(id);
+    }
+
+    private void beginWrite(Connection conn, int id) throws SQLException {
+        if (conn.getAutoCommit()) return;  // committed by executeUpdate, invalidate() is enough
+        synchronized (this) {
+            uncommittedWrites.merge(id, 1, Integer::sum);
+        }
+    }
+
+    // Insert & update paths of Ch15JDBC, with invalidation. With auto-commit off, see endWrite().
+    int insertExhibit(Connection conn, int id, String name, double numAcres) throws SQLException {
+        beginWrite(conn, id);
+        try (var ps = conn.prepareStatement("INSERT INTO exhibits VALUES(?, ?, ?)")) {
+            ps.setInt(1, id);
+            ps.setString(2, name);
+            ps.setDouble(3, numAcres);
+            return ps.executeUpdate();
+        } finally {
+            invalidate(id);  // also when it failed, since we do not know what reached the database
+        }
+    }
+
+    int updateExhibitName(Connection conn, int id, String name) throws SQLException {
+        beginWrite(conn, id);
+        try (var ps = conn.prepareStatement("UPDATE exhibits SET name = ? WHERE id = ?")) {
+            ps.setString(1, name);
+            ps.setInt(2, id);
+            return ps.executeUpdate();
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    synchronized String stats() {
+        return String.format("hits %,d, misses %,d, evictions %,d, expirations %,d, size %d", hits, misses, map.evictions, map.expirations, map.size);
+    }
+
+    // Open addressing int -> String map with expiry time per entry and CLOCK eviction. Not thread-safe, guarded by cache.
+    static class IntStringMap {
+        private final int[] keys;
+        private final String[] values;  // null means slot is empty
+        private final long[] expiresAt;
+        private final boolean[] referenced;  // set by get(), cleared by clock hand
+        private final int mask;
+        private final int maxSize;
+        private int size;
+        private int hand;
+        long evictions;
+        long expirations;
+
+        IntStringMap(int maxSize) {
+            if (maxSize <= 0) throw new IllegalArgumentException("Invalid size: " + maxSize);
+            int capacity = Integer.highestOneBit(Math.max(2, maxSize * 2 - 1)) << 1;  // power of two, at most half full
+            this.keys = new int[capacity];
+            this.values = new String[capacity];
+            this.expiresAt = new long[capacity];
+            this.referenced = new boolean[capacity];
+            this.mask = capacity - 1;
+            this.maxSize = maxSize;
+        }
+
+        private int slot(int key) {
+            int h = key * 0x9E3779B9;  // multiply by golden ratio to spread sequential ids
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        // Slot of key, or -1.
+        private int find(int key) {
+            for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return i;
+            }
+            return -1;
+        }
+
+        String get(int key, long now) {
+            int i = find(key);
+            if (i < 0) return null;
+            if (now - expiresAt[i] >= 0) {  // compare difference, nanoTime can overflow
+                removeAt(i);
+                expirations++;
+                return null;
+            }
+            referenced[i] = true;
+            return values[i];
+        }
+
+        void put(int key, String value, long expires) {
+            int i = find(key);
+            if (i < 0) {
+                if (size >= maxSize) evict();
+                i = slot(key);
+                while (values[i] != null) i = (i + 1) & mask;
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+            expiresAt[i] = expires;
+            referenced[i] = false;
+        }
+
+        void remove(int key) {
+            int i = find(key);
+            if (i >= 0) removeAt(i);
+        }
+
+        void clear() {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+
+        // Clock hand sweeps slots, gives referenced entries second chance, evicts first unreferenced entry.
+        private void evict() {
+            while (true) {
+                hand = (hand + 1) & mask;
+                if (values[hand] == null) continue;
+                if (referenced[hand]) {
+                    referenced[hand] = false;
+                } else {
+                    removeAt(hand);
+                    evictions++;
+                    return;
+                }
+            }
+        }
+
+        // Backward shift deletion: moves following entries of same probe chain back, so find() never stops at a hole too early.
+        private void removeAt(int i) {
+            values[i] = null;
+            size--;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) return;
+                int home = slot(keys[j]);
+                boolean canMove = i <= j ? (home <= i || home > j) : (home <= i && home > j);  // is hole between home and j (cyclically)?
+                if (canMove) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    expiresAt[i] = expiresAt[j];
+                    referenced[i] = referenced[j];
+                    values[j] = null;
+                    i = j;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package ocpGuideBook.cha15;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public class Ch15ExhibitSnapshot {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        Running SELECT for every dashboard request goes to the database every time.
+        Snapshot loads exhibits once and keeps each column in its own array (columnar):
+        int[] ids, int[] name codes, double[] num_acres. A scan over one column reads one contiguous array, no objects per row.
+        Dictionary encoding: each distinct name is stored once in dictionary, rows store only int code of their name.
+        Filter on name is checked once per distinct name, then rows are matched by comparing ints.
+        Rows are kept sorted by id, so row of id is found by binary search.
+        Both columns are nullable: NULL name gets its own code (dictionary entry null), NULL num_acres is stored as NaN.
+
+        Refresh is incremental. refresh() reads only rows with id greater than last loaded id (new exhibits).
+        refreshIds(...) reloads given ids, to call after they were updated or deleted (the table has no column telling what changed).
+        Readers get immutable Columns view, refresh publishes new one. Readers never wait and never see half-done refresh.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (Connection conn = DriverManager.getConnection(url)) {
+            var snapshot = load(conn);
+            Columns exhibits = snapshot.columns();
+            System.out.println(exhibits.size() + " exhibits, " + exhibits.totalAcres() + " acres");
+            System.out.println(Arrays.toString(exhibits.idsWithNamePrefix("Z")));
+
+            try (var ps = conn.prepareStatement("INSERT INTO exhibits VALUES(?, ?, ?)")) {
+                ps.setInt(1, 10);
+                ps.setString(2, "Deer");
+                ps.setDouble(3, 3);
+                ps.executeUpdate();
+            }
+            System.out.println(snapshot.refresh(conn) + " new");  // 1 new
+            System.out.println(snapshot.columns().name(10));  // Deer. Old exhibits view does not have it.
+        }
+    }
+
+    // Immutable view of snapshot. Arrays may be longer than size and shared with newer views, only first size entries belong to this view.
+    static final class Columns {
+        private final int size;
+        private final int[] ids;
+        private final int[] nameCodes;
+        private final double[] numAcres;
+        private final String[] dictionary;
+        private final int dictionarySize;
+
+        private Columns(int size, int[] ids, int[] nameCodes, double[] numAcres, String[] dictionary, int dictionarySize) {
+            this.size = size;
+            this.ids = ids;
+            this.nameCodes = nameCodes;
+            this.numAcres = numAcres;
+            this.dictionary = dictionary;
+            this.dictionarySize = dictionarySize;
+        }
+
+        int size() { return size; }
+        int distinctNames() { return dictionarySize; }
+
+        // Row index of id, or negative.
+        int rowOf(int id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        String name(int id) {
+            int row = rowOf(id);
+            return row < 0 ? null : dictionary[nameCodes[row]];
+        }
+
+        // NaN if there is no such exhibit or its num_acres is NULL.
+        double numAcres(int id) {
+            int row = rowOf(id);
+            return row < 0 ? Double.NaN : numAcres[row];
+        }
+
+        double totalAcres() {
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                if (!Double.isNaN(numAcres[i])) total += numAcres[i];  // NULL is skipped, like SUM(num_acres)
+            }
+            return total;
+        }
+
+        // Predicate is tested per distinct name, not per row.
+        int[] idsWithNamePrefix(String prefix) {
+            var matches = new boolean[dictionarySize];
+            for (int code = 0; code < dictionarySize; code++) matches[code] = dictionary[code] != null && dictionary[code].startsWith(prefix);
+            int[] result = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (matches[nameCodes[i]]) result[n++] = ids[i];
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        // NULL num_acres (NaN) is never between.
+        int[] idsWithAcresBetween(double min, double max) {
+            int[] result = new int[size];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                double acres = numAcres[i];
+                if (acres >= min && acres <= max) result[n++] = ids[i];
+            }
+            return Arrays.copyOf(result, n);
+        }
+
+        int countWithName(String name) {
+            int code = -1;
+            for (int c = 0; c < dictionarySize; c++) {
+                if (Objects.equals(dictionary[c], name)) code = c;
+            }
+            if (code < 0) return 0;
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (nameCodes[i] == code) count++;
+            }
+            return count;
+        }
+    }
+
+    private static final String SELECT = "SELECT id, name, num_acres FROM exhibits";
+
+    private volatile Columns columns;
+    // Dictionary only grows, so views share it. Written only by refresh, guarded by this.
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] dictionary = new String[16];
+    private int dictionarySize;
+
+    private Ch15ExhibitSnapshot() {
+        columns = new Columns(0, new int[16], new int[16], new double[16], dictionary, 0);
+    }
+
+    static Ch15ExhibitSnapshot load(Connection conn) throws SQLException {
+        var snapshot = new Ch15ExhibitSnapshot();
+        snapshot.refresh(conn);  // empty snapshot, so every row is new
+        return snapshot;
+    }
+
+    Columns columns() { return columns; }
+
+    private int encode(String name) {
+        Integer code = codes.get(name);
+        if (code == null) {
+            if (dictionarySize == dictionary.length) dictionary = Arrays.copyOf(dictionary, dictionarySize + (dictionarySize >> 1));
+            code = dictionarySize;
+            dictionary[dictionarySize++] = name;
+            codes.put(name, code);
+        }
+        return code;
+    }
+
+    // getDouble() returns 0 for NULL, which would count as real value in totalAcres() & idsWithAcresBetween().
+    private static double acres(ResultSet rs) throws SQLException {
+        double acres = rs.getDouble("num_acres");
+        return rs.wasNull() ? Double.NaN : acres;
+    }
+
+    // Appends rows with id greater than last id in snapshot. Returns number of new rows.
+    synchronized int refresh(Connection conn) throws SQLException {
+        Columns c = columns;
+        try (PreparedStatement ps = conn.prepareStatement(SELECT + " WHERE id > ? ORDER BY id")) {
+            ps.setInt(1, c.size == 0 ? Integer.MIN_VALUE : c.ids[c.size - 1]);
+            ps.setFetchSize(1000);
+            int size = c.size;
+            int[] ids = c.ids;
+            int[] nameCodes = c.nameCodes;
+            double[] numAcres = c.numAcres;
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (size == ids.length) {  // grow by half. Older views keep old arrays.
+                        int capacity = Math.max(16, size + (size >> 1));
+                        ids = Arrays.copyOf(ids, capacity);
+                        nameCodes = Arrays.copyOf(nameCodes, capacity);
+                        numAcres = Arrays.copyOf(numAcres, capacity);
+                    }
+                    // Writing past c.size is safe, older views never read there.
+                    ids[size] = rs.getInt("id");
+                    nameCodes[size] = encode(rs.getString("name"));
+                    numAcres[size] = acres(rs);
+                    size++;
+                }
+            }
+            int added = size - c.size;
+            if (added > 0) columns = new Columns(size, ids, nameCodes, numAcres, dictionary, dictionarySize);  // volatile write publishes arrays
+            return added;
+        }
+    }
+
+    // Reloads given ids: updates changed rows, removes deleted rows, adds rows with lower id than last id.
+    // Rows before c.size are seen by readers, so this copies the arrays instead of changing them.
+    synchronized void refreshIds(Connection conn, int... changedIds) throws SQLException {
+        Columns c = columns;
+        int size = c.size;
+        int[] ids = Arrays.copyOf(c.ids, c.size + changedIds.length);
+        int[] nameCodes = Arrays.copyOf(c.nameCodes, ids.length);
+        double[] numAcres = Arrays.copyOf(c.numAcres, ids.length);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT + " WHERE id = ?")) {
+            for (int id : changedIds) {
+                ps.setInt(1, id);
+                try (var rs = ps.executeQuery()) {
+                    int row = Arrays.binarySearch(ids, 0, size, id);
+                    if (!rs.next()) {
+                        if (row >= 0) {  // deleted
+                            System.arraycopy(ids, row + 1, ids, row, size - row - 1);
+                            System.arraycopy(nameCodes, row + 1, nameCodes, row, size - row - 1);
+                            System.arraycopy(numAcres, row + 1, numAcres, row, size - row - 1);
+                            size--;
+                        }
+                        continue;
+                    }
+                    if (row < 0) {  // inserted with id lower than last id, make room at insertion point
+                        row = -row - 1;
+                        System.arraycopy(ids, row, ids, row + 1, size - row);
+                        System.arraycopy(nameCodes, row, nameCodes, row + 1, size - row);
+                        System.arraycopy(numAcres, row, numAcres, row + 1, size - row);
+                        size++;
+                    }
+                    ids[row] = id;
+                    nameCodes[row] = encode(rs.getString("name"));
+                    numAcres[row] = acres(rs);
+                }
+            }
+        }
+        // Names no longer used stay in dictionary until next load(). They only cost one check per filter.
+        columns = new Columns(size, ids, nameCodes, numAcres, dictionary, dictionarySize);
+    }
+
+}
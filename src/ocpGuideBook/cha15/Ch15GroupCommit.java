@@ -0,0 +1,205 @@
+package ocpGuideBook.cha15;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+
+public class Ch15GroupCommit implements AutoCloseable {
+
+    public static void main(String[] args) throws Exception {
+
+        /*
+        In auto-commit mode every executeUpdate() is its own transaction, and every commit waits for the database log to be written to disk.
+        Group commit: collect small write units from many threads, run them in one transaction, commit once.
+        A savepoint is set before each unit. If one unit fails, rollback(savepoint) undoes only that unit,
+        the rest of the group is still committed. (rollback() without savepoint would undo the whole group.)
+        Each submit() returns CompletableFuture that completes after the group containing the unit is committed.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (var pool = new Ch15ConnectionPool(url, 1, 4, 30_000, 5_000); var group = new Ch15GroupCommit(pool, 100, 5)) {
+            var results = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 1; i <= 1000; i++) {
+                int userId = 1000 + i;
+                results.add(group.submit(conn -> {
+                    try (var ps = conn.prepareStatement("INSERT INTO USERS VALUES(?, ?)")) {
+                        ps.setInt(1, userId);
+                        ps.setString(2, "Potato" + userId);
+                        ps.executeUpdate();
+                    }
+                }));
+            }
+            CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();  // wait for all, failed or not
+            System.out.println(group.stats());  // units 1,000, groups 10, failed units 0, failed groups 0
+        }
+
+        // Transaction template for a single unit of work: commit if work succeeds, rollback if it throws.
+        try (var pool = new Ch15ConnectionPool(url, 1, 1, 30_000, 5_000); Connection conn = pool.getConnection()) {
+            int updated = inTransaction(conn, c -> {
+                try (var ps = c.prepareStatement("UPDATE exhibits SET num_acres = num_acres + 1")) {
+                    return ps.executeUpdate();
+                }
+            });
+            System.out.println(updated);
+        }
+    }
+
+    @FunctionalInterface
+    interface WriteUnit {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface TransactionWork<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    // Runs work in one transaction: setAutoCommit(false), commit on success, rollback on exception. Restores auto-commit mode.
+    static <T> T inTransaction(Connection conn, TransactionWork<T> work) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            T result = work.apply(conn);
+            conn.commit();
+            return result;
+        } catch (SQLException | RuntimeException | Error e) {
+            try {
+                conn.rollback();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private record Pending(WriteUnit unit, CompletableFuture<Void> result) {}
+
+    private final DataSource dataSource;
+    private final int maxGroupSize;
+    private final long maxDelayMillis;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean closed;
+
+    private long units;
+    private long groups;
+    private long failedUnits;
+    private long failedGroups;
+
+    // Group is committed when it has maxGroupSize units, or maxDelayMillis after its first unit arrived.
+    Ch15GroupCommit(DataSource dataSource, int maxGroupSize, long maxDelayMillis) {
+        if (maxGroupSize <= 0 || maxDelayMillis < 0) throw new IllegalArgumentException("Invalid group size or delay: " + maxGroupSize + ", " + maxDelayMillis);
+        this.dataSource = dataSource;
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.committer = new Thread(this::run, "group-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    // Thread-safe. Unit runs later on committer thread, with committer's connection. Unit must not commit, rollback, or close it.
+    CompletableFuture<Void> submit(WriteUnit unit) {
+        var pending = new Pending(unit, new CompletableFuture<>());
+        queue.add(pending);
+        // Checked after add: if close() ran in between, committer and close() may both be done with queue already.
+        // Whoever removes unit from queue completes it, so it is failed here only if still queued.
+        if (closed && queue.remove(pending)) failClosed(pending);
+        return pending.result();
+    }
+
+    private static void failClosed(Pending pending) {
+        pending.result().completeExceptionally(new SQLException("Group commit is closed"));
+    }
+
+    private void run() {
+        try {
+            commitUntilClosed();
+        } finally {  // also when committer dies, so later submit() fails instead of waiting forever
+            closed = true;
+            Pending late;
+            while ((late = queue.poll()) != null) failClosed(late);
+        }
+    }
+
+    private void commitUntilClosed() {
+        var group = new ArrayList<Pending>(maxGroupSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);  // wake up regularly to check closed
+                if (first == null) continue;
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (group.size() < maxGroupSize) {
+                    long wait = deadline - System.nanoTime();
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                closed = true;  // nobody else interrupts this thread, treat as shutdown: commit what we have and finish
+            }
+            if (!group.isEmpty()) commitGroup(group);
+            group.clear();
+        }
+    }
+
+    private void commitGroup(List<Pending> group) {
+        var succeeded = new ArrayList<Pending>(group.size());
+        try (Connection conn = dataSource.getConnection()) {
+            inTransaction(conn, c -> {
+                for (Pending pending : group) {
+                    Savepoint savepoint = c.setSavepoint();
+                    try {
+                        pending.unit().apply(c);
+                        c.releaseSavepoint(savepoint);  // not needed anymore, frees database resources
+                        succeeded.add(pending);
+                    } catch (SQLException | RuntimeException e) {
+                        c.rollback(savepoint);  // undo this unit only
+                        synchronized (this) { failedUnits++; }
+                        pending.result().completeExceptionally(e);
+                    }
+                }
+                return null;
+            });
+            synchronized (this) {
+                units += group.size();
+                groups++;
+            }
+            for (Pending pending : succeeded) pending.result().complete(null);  // only after commit
+        } catch (SQLException | RuntimeException | Error e) {  // commit failed or unit threw Error, whole group is rolled back
+            synchronized (this) {
+                units += group.size();
+                failedGroups++;
+            }
+            for (Pending pending : group) pending.result().completeExceptionally(e);  // does nothing for already failed units
+        }
+    }
+
+    synchronized String stats() {
+        return String.format("units %,d, groups %,d, failed units %,d, failed groups %,d", units, groups, failedUnits, failedGroups);
+    }
+
+    // Commits units already submitted, then stops committer thread.
+    // If interrupted while waiting, units still queued are failed instead. Group being committed still completes.
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // restore flag for caller, AutoCloseable.close() should not throw InterruptedException
+        }
+        Pending late;
+        while ((late = queue.poll()) != null) failClosed(late);  // submitted while closing, or not committed yet when interrupted
+    }
+
+}
@@ -30,7 +30,7 @@ public class Ch15JDBC {
         CallableStatement: Executes commands stored in the database
         ResultSet: Reads the results of a query
         
-        Exam uses DriverManager class instead of the DataSource interface. (Use DataSource in practice.) 
+        Exam uses DriverManager class instead of the DataSource interface. (Use DataSource in practice. See Ch15ConnectionPool.)
         */
         
         String url = "jdbc:hsqldb:file:example";  // DriverManager class manages set of drivers available.
@@ -84,6 +84,7 @@ public class Ch15JDBC {
                     System.out.println("Ran an update: " + result);
                 }
             }
+            // See Ch15QueryMetrics for timing execute(), executeQuery() and executeUpdate() per SQL text, exported through JMX.
             
             // If wrong method is called for SQL statement, SQLException is thrown. Driver can't translate query into expected return type.
             
@@ -99,8 +100,10 @@ public class Ch15JDBC {
             }
             // setNull takes int parameter (sets to designated SQL NULL), setObject takes any Java type (if primitive is passed, wraps to Wrapper).
             // setNull(3, Types.INTEGER);  Sets column 3, Integer Null.
+            // To insert many rows in one round trip with addBatch() & executeBatch(), see Ch15BatchWriter.
             
             // When executing ps multiple times, PreparedStatement is smart enough to remember parameters that were already set.
+            // To reuse same PreparedStatement across blocks instead of preparing same SQL again, see Ch15StatementCache.
             
             
             // Reading ResultSet:
@@ -115,6 +118,9 @@ public class Ch15JDBC {
                 }
                 System.out.println(idToNameMap);
             }
+            // To process rows one at a time as Stream<T>, without collecting whole table into map, see Ch15ResultSetStream.
+            // To cache id to name lookups without boxing int keys, see Ch15ExhibitNameCache.
+            // To load whole table once into column arrays and scan it repeatedly, see Ch15ExhibitSnapshot.
             
             
             /*
@@ -158,6 +164,7 @@ public class Ch15JDBC {
                 cs.execute();  // execute and get OUT parameter
                 System.out.println(cs.getInt("num"));  // grab the output and print
             }
+            // See Ch15ProcedureCalls for reusing CallableStatement per procedure, and batching IN-only calls.
             
             // Just be able to recognize that you can pass options on these methods. There is no method with just one option.
             // prepareStatement(String sql, int resultSetTypeOption, int resultSetConcurrencyOption)
@@ -186,6 +193,7 @@ public class Ch15JDBC {
         // conn.rollback(sp2);  // throws SQLExeption. sp2 was removed.
         
         // Calling rollback(), when there's nothing to roll back, does not do anything (when on non auto-comit mode).
+        // See Ch15GroupCommit for transaction template, and group commit using a savepoint per unit.
         
         
         // Closing Database Resources:
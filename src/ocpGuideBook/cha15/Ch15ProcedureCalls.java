@@ -0,0 +1,172 @@
+package ocpGuideBook.cha15;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Ch15ProcedureCalls implements AutoCloseable {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        conn.prepareCall(sql) is parsed by driver/database each time. Same CallableStatement can be executed again with new parameters,
+        so it is prepared once per procedure signature (the call SQL text) and kept.
+        Calls with only IN parameters and no ResultSet can be batched: addBatch() per call, executeBatch() sends all in one round trip.
+        Batch cannot return OUT/INOUT values or ResultSet (JDBC throws BatchUpdateException), so those are executed one by one,
+        still reusing prepared statement.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (Connection conn = DriverManager.getConnection(url); var calls = new Ch15ProcedureCalls(conn)) {
+            int[] inputs = new int[10_000];
+            for (int i = 0; i < inputs.length; i++) inputs[i] = i;
+            int[] doubled = calls.callInOutInt("{call double_number(?)}", inputs);  // INOUT, statement reused
+            System.out.println(doubled[8]);  // 16
+
+            List<List<String>> names = calls.query("{call read_names_by_letter(?)}", List.of(new Object[] { "Z" }, new Object[] { "E" }), rs -> rs.getString(3));
+            System.out.println(names);
+
+            long start = System.nanoTime();
+            for (int input : inputs) {  // prepare every time, as in Ch15JDBC
+                try (var cs = conn.prepareCall("{call double_number(?)}")) {
+                    cs.setInt(1, input);
+                    cs.registerOutParameter(1, Types.INTEGER);
+                    cs.execute();
+                }
+            }
+            System.out.printf("prepare per call: %,d ns per call%n", (System.nanoTime() - start) / inputs.length);
+            System.out.println(calls.stats());
+        }
+    }
+
+    private static class Stats {
+        long calls;
+        long nanos;
+        long batches;
+    }
+
+    private final Connection conn;
+    private final boolean batchSupported;
+    private final Map<String, CallableStatement> statements = new HashMap<>();
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    Ch15ProcedureCalls(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.batchSupported = conn.getMetaData().supportsBatchUpdates();
+    }
+
+    // Prepared once per signature, for life of this object. Not thread-safe, like Connection.
+    CallableStatement statement(String sql) throws SQLException {
+        CallableStatement cs = statements.get(sql);
+        if (cs == null || cs.isClosed()) {
+            cs = conn.prepareCall(sql);
+            statements.put(sql, cs);
+        }
+        return cs;
+    }
+
+    // IN-only procedure without ResultSet, once per parameter set. Batched if driver supports it. Returns update count per call.
+    int[] callBatch(String sql, List<Object[]> inParams) throws SQLException {
+        CallableStatement cs = statement(sql);
+        long start = System.nanoTime();
+        int[] counts;
+        if (batchSupported) {
+            try {
+                for (Object[] params : inParams) {
+                    setParameters(cs, params);
+                    cs.addBatch();
+                }
+                counts = cs.executeBatch();
+            } catch (SQLException e) {  // setObject(), addBatch() or executeBatch() failed. Calls already added must not stay for next callBatch().
+                try {
+                    cs.clearBatch();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        } else {
+            counts = new int[inParams.size()];
+            for (int i = 0; i < counts.length; i++) {
+                setParameters(cs, inParams.get(i));
+                cs.execute();
+                counts[i] = cs.getUpdateCount();
+            }
+        }
+        record(sql, inParams.size(), System.nanoTime() - start, batchSupported);
+        return counts;
+    }
+
+    // Procedure with single INTEGER INOUT parameter, like double_number. Returns OUT value per input.
+    int[] callInOutInt(String sql, int[] inputs) throws SQLException {
+        CallableStatement cs = statement(sql);
+        long start = System.nanoTime();
+        cs.registerOutParameter(1, Types.INTEGER);  // stays registered across executions
+        int[] outputs = new int[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            cs.setInt(1, inputs[i]);
+            cs.execute();
+            outputs[i] = cs.getInt(1);
+        }
+        record(sql, inputs.length, System.nanoTime() - start, false);
+        return outputs;
+    }
+
+    // Procedure returning ResultSet, like read_names_by_letter. Returns mapped rows per parameter set.
+    <T> List<List<T>> query(String sql, List<Object[]> inParams, Ch15ResultSetStream.RowMapper<T> mapper) throws SQLException {
+        CallableStatement cs = statement(sql);
+        long start = System.nanoTime();
+        var results = new ArrayList<List<T>>(inParams.size());
+        for (Object[] params : inParams) {
+            setParameters(cs, params);
+            try (var rs = cs.executeQuery()) {
+                var rows = new ArrayList<T>();
+                while (rs.next()) rows.add(mapper.map(rs));
+                results.add(rows);
+            }
+        }
+        record(sql, inParams.size(), System.nanoTime() - start, false);
+        return results;
+    }
+
+    private static void setParameters(CallableStatement cs, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) cs.setObject(i + 1, params[i]);
+    }
+
+    private void record(String sql, int calls, long nanos, boolean batched) {
+        Stats s = stats.computeIfAbsent(sql, k -> new Stats());
+        s.calls += calls;
+        s.nanos += nanos;
+        if (batched) s.batches++;
+    }
+
+    // Average time per call of each procedure signature.
+    String stats() {
+        var sb = new StringBuilder();
+        stats.forEach((sql, s) -> sb.append(String.format("%s: %,d calls, %,d batches, %,d ns per call%n", sql, s.calls, s.batches, s.calls == 0 ? 0 : s.nanos / s.calls)));
+        return sb.toString();
+    }
+
+    // Closes prepared statements. Does not close the connection.
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (CallableStatement cs : statements.values()) {
+            try {
+                cs.close();
+            } catch (SQLException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        statements.clear();
+        if (failure != null) throw failure;
+    }
+
+}
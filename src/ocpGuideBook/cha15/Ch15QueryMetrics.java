@@ -0,0 +1,260 @@
+package ocpGuideBook.cha15;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import ocpGuideBook.cha14.LatencyHistogram;
+
+public class Ch15QueryMetrics implements AutoCloseable {
+
+    public static void main(String[] args) throws Exception {
+
+        /*
+        Wrapped Connection returns wrapped statements. Every execute(), executeQuery(), executeUpdate() and executeBatch() is timed,
+        and recorded under its SQL text: latency histogram, number of executions, rows read from ResultSet, rows updated.
+        Execution slower than threshold is logged with SQL text only. Bind variable values are never logged (they can be passwords,
+        personal data...), and literals in SQL of plain Statement are replaced by ? before SQL is logged or used as key.
+        Stats are exported as MXBean, so they can be read with jconsole or any JMX client while program runs.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (var metrics = new Ch15QueryMetrics(50, System.err::println)) {
+            metrics.register("example");  // ocpGuideBook.cha15:type=QueryMetrics,name="example"
+            try (Connection conn = metrics.wrap(DriverManager.getConnection(url))) {
+                try (var ps = conn.prepareStatement("SELECT * FROM exhibits WHERE name LIKE ?")) {
+                    ps.setString(1, "Z%");
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) System.out.println(rs.getString("name"));
+                    }
+                }
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("UPDATE exhibits SET num_acres = 3 WHERE id = 1");  // recorded as UPDATE exhibits SET num_acres = ? WHERE id = ?
+                }
+            }
+            for (String line : metrics.summaries()) System.out.println(line);
+        }
+    }
+
+    // Read by JMX. MXBean interface must be public, implementation can be private.
+    public interface QueryMetricsMXBean {
+        long getExecutions();
+        long getSlowExecutions();
+        long getFailedExecutions();
+        long getSlowThresholdMillis();
+        void setSlowThresholdMillis(long millis);
+        String[] getSqlTexts();
+        String[] getSummaries();
+        void reset();
+    }
+
+    static class SqlStats {
+        final LatencyHistogram latency = new LatencyHistogram();  // power-of-two microsecond buckets, see LatencyHistogram
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder rowsRead = new LongAdder();
+        final LongAdder rowsUpdated = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        String summary(String sql) {
+            long n = latency.count();
+            return String.format("%s: %,d executions, avg %,d us, p50 <%,d us, p99 <%,d us, max %,d us, rows read %,d, rows updated %,d, failures %,d",
+                    sql, n, n == 0 ? 0 : totalNanos.sum() / n / 1000, latency.percentileUpperBound(50), latency.percentileUpperBound(99),
+                    maxNanos.get() / 1000, rowsRead.sum(), rowsUpdated.sum(), failures.sum());
+        }
+    }
+
+    // 'text' with '' inside, also with prefix: X'1F' (hex), N'text' (national), B'101', U&'text'.
+    private static final Pattern STRING_LITERAL = Pattern.compile("(?:[xXnNbB]|[uU]&)?'(?:[^']|'')*'");
+    // 42, 1.5, .5, 1e5, 1.5E-3, 0x1F, 0b101, with sign when - or + is not after operand (name, ?, closing parenthesis)
+    // or is after keyword: "= -7" and "BETWEEN -7" are redacted to "= ?" and "BETWEEN ?", "a - 7" to "a - ?".
+    private static final Pattern NUMBER_LITERAL = Pattern.compile(
+            "(?:(?:(?<![\\w)?]\\s{0,20})|(?<=\\b(?i:AND|OR|NOT|BETWEEN|IN|IS|LIKE|WHEN|THEN|ELSE|SELECT|WHERE|SET|VALUES|RETURN|LIMIT|OFFSET)\\s{0,20}))[-+]\\s*)?(?<![\\w.])(?:0[xX][0-9a-fA-F]+|0[bB][01]+|(?:\\d+(?:\\.\\d*)?|\\.\\d+)(?:[eE][-+]?\\d+)?)(?![\\w.])");
+
+    private final Map<String, SqlStats> bySql = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder slowExecutions = new LongAdder();
+    private final LongAdder failedExecutions = new LongAdder();
+    private final Consumer<String> slowLog;
+    private volatile long slowThresholdNanos;
+    private ObjectName registeredName;
+
+    Ch15QueryMetrics(long slowThresholdMillis, Consumer<String> slowLog) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.slowLog = slowLog;
+    }
+
+    // Literals replaced by ?, so values are not logged, and same statement with other values is recorded under one key.
+    static String redact(String sql) {
+        String redacted = STRING_LITERAL.matcher(sql).replaceAll("?");
+        return NUMBER_LITERAL.matcher(redacted).replaceAll("?");
+    }
+
+    // Connection whose statements are measured. Closing it closes the given connection.
+    // Statement.getConnection() and ResultSet.getStatement() return wrappers too, so statements reached through them are measured.
+    // Other ways to the driver's objects (unwrap(), DatabaseMetaData.getConnection()...) are not.
+    Connection wrap(Connection conn) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+            }
+            Object result = invoke(conn, method, args);
+            if (result instanceof Statement) {
+                // prepareStatement(sql, ...) & prepareCall(sql, ...) have SQL as first argument, createStatement(...) has none.
+                String sql = result instanceof PreparedStatement ? redact((String) args[0]) : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return wrap((Statement) result, type, sql, proxy);
+            }
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+    }
+
+    private Object wrap(Statement statement, Class<?> type, String preparedSql, Object connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private SqlStats lastStats;  // stats of last execution, for ResultSet from getResultSet()
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                switch (name) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "getConnection":
+                        return connection;
+                    case "getResultSet":
+                        var rs = (ResultSet) Ch15QueryMetrics.invoke(statement, method, args);
+                        return rs == null || lastStats == null ? rs : countRows(rs, lastStats, proxy);
+                }
+                if (!name.startsWith("execute")) return Ch15QueryMetrics.invoke(statement, method, args);
+
+                // Plain Statement gets SQL with execute(sql). Batch of plain Statement has no single SQL text.
+                String sql = preparedSql != null ? preparedSql
+                        : args != null && args.length > 0 && args[0] instanceof String ? redact((String) args[0]) : "(batch)";
+                SqlStats stats = bySql.computeIfAbsent(sql, k -> new SqlStats());
+                lastStats = stats;
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = Ch15QueryMetrics.invoke(statement, method, args);
+                } catch (Throwable e) {
+                    stats.failures.increment();
+                    failedExecutions.increment();
+                    record(sql, stats, System.nanoTime() - start);
+                    throw e;
+                }
+                record(sql, stats, System.nanoTime() - start);  // for queries, time until first rows arrive. Reading rows is not included.
+                if (result instanceof ResultSet) return countRows((ResultSet) result, stats, proxy);
+                if (result instanceof Integer) stats.rowsUpdated.add((Integer) result);
+                if (result instanceof Long) stats.rowsUpdated.add((Long) result);
+                if (result instanceof int[]) for (int count : (int[]) result) if (count > 0) stats.rowsUpdated.add(count);  // SUCCESS_NO_INFO is negative
+                if (result instanceof long[]) for (long count : (long[]) result) if (count > 0) stats.rowsUpdated.add(count);
+                return result;
+            }
+        };
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private ResultSet countRows(ResultSet rs, SqlStats stats, Object statement) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "getStatement":
+                    return statement;
+                case "next":
+                    boolean hasRow = rs.next();
+                    if (hasRow) stats.rowsRead.increment();
+                    return hasRow;
+            }
+            return invoke(rs, method, args);
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();  // rethrow SQLException of driver as is
+        }
+    }
+
+    private void record(String sql, SqlStats stats, long nanos) {
+        stats.latency.record(nanos);
+        stats.totalNanos.add(nanos);
+        stats.maxNanos.accumulateAndGet(nanos, Math::max);
+        executions.increment();
+        if (nanos >= slowThresholdNanos) {
+            slowExecutions.increment();
+            slowLog.accept(String.format("Slow query %,d us: %s", nanos / 1000, sql));  // SQL with ? only, values are not logged
+        }
+    }
+
+    String[] summaries() {
+        return bySql.entrySet().stream().sorted(Map.Entry.comparingByKey()).map(e -> e.getValue().summary(e.getKey())).toArray(String[]::new);
+    }
+
+    SqlStats stats(String sql) {
+        return bySql.get(redact(sql));
+    }
+
+    // Registers stats in platform MBeanServer as ocpGuideBook.cha15:type=QueryMetrics,name=<name>.
+    synchronized void register(String name) throws JMException {
+        if (registeredName != null) throw new IllegalStateException("Already registered as " + registeredName);
+        var objectName = new ObjectName("ocpGuideBook.cha15:type=QueryMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Jmx(), objectName);
+        registeredName = objectName;
+    }
+
+    private class Jmx implements QueryMetricsMXBean {
+        @Override public long getExecutions() { return executions.sum(); }
+        @Override public long getSlowExecutions() { return slowExecutions.sum(); }
+        @Override public long getFailedExecutions() { return failedExecutions.sum(); }
+        @Override public long getSlowThresholdMillis() { return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos); }
+        @Override public void setSlowThresholdMillis(long millis) { slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis); }
+        @Override public String[] getSqlTexts() { return bySql.keySet().stream().sorted().toArray(String[]::new); }
+        @Override public String[] getSummaries() { return summaries(); }
+        @Override public void reset() {
+            bySql.clear();
+            executions.reset();
+            slowExecutions.reset();
+            failedExecutions.reset();
+        }
+    }
+
+    // Unregisters from MBeanServer. Wrapped connections still work, and are still measured.
+    @Override
+    public synchronized void close() throws JMException {
+        if (registeredName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package ocpGuideBook.cha15;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Ch15ResultSetStream {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        Collecting every row into a HashMap keeps whole table in memory.
+        Stream<T> backed by ResultSet maps one row at a time, as the stream pulls it. Rows not yet pulled are still in the database.
+        setFetchSize(n) hints driver to fetch n rows per round trip, instead of driver default (some drivers fetch all rows at once).
+        TYPE_FORWARD_ONLY (cursor moves only forward) & CONCUR_READ_ONLY (rows cannot be updated through ResultSet) are cheapest options.
+        Stream must be closed (try-with-resources), which closes ResultSet and PreparedStatement. Connection is left open.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (Connection conn = DriverManager.getConnection(url)) {
+            try (Stream<Exhibit> exhibits = query(conn, "SELECT id, name FROM exhibits", 500, rs -> new Exhibit(rs.getInt("id"), rs.getString("name")))) {
+                exhibits.filter(e -> e.name().startsWith("Z")).forEach(System.out::println);  // only matching exhibits are kept
+            }
+
+            try (var rows = query(conn, "SELECT id, name FROM exhibits", 500, rs -> new Exhibit(rs.getInt("id"), rs.getString("name")))) {
+                Map<Integer, String> idToNameMap = rows.collect(Collectors.toMap(Exhibit::id, Exhibit::name));  // typed, unlike raw HashMap in Ch15JDBC
+                System.out.println(idToNameMap);
+            }
+        }
+    }
+
+    record Exhibit(int id, String name) {}
+
+    // Maps current row of ResultSet. Should not call rs.next().
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // SQLException thrown while stream is pulling rows. Stream methods cannot throw checked exception.
+    static class UncheckedSQLException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedSQLException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    // Lazily pulled rows of query. Bind variables are set in order with setObject. Caller must close the stream.
+    static <T> Stream<T> query(Connection conn, String sql, int fetchSize, RowMapper<T> mapper, Object... params) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs;
+        try {
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);  // SQL index starts with 1
+            rs = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            ps.close();
+            throw e;
+        }
+        var rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED) {  // Long.MAX_VALUE: size unknown
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next()) return false;
+                    action.accept(mapper.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try (ps; rs) {  // closes rs first, then ps (reverse order of declaration)
+            } catch (SQLException e) {
+                throw new UncheckedSQLException(e);
+            }
+        });
+    }
+
+}
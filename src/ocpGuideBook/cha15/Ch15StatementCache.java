@@ -0,0 +1,184 @@
+package ocpGuideBook.cha15;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Ch15StatementCache implements AutoCloseable {
+
+    public static void main(String[] args) throws SQLException {
+
+        /*
+        conn.prepareStatement(sql) sends SQL to database to be parsed and planned, every time it's called.
+        Same PreparedStatement can be executed many times with different bind variables, so it can be kept and reused.
+        Cache keyed by SQL text hands back already-prepared statement. Its close() only returns it to the cache,
+        after clearParameters() so values of previous use are not carried over.
+        Least recently used (LRU) statement is really closed when cache is full.
+        Cache belongs to one Connection, since PreparedStatement cannot be used with other connection.
+        */
+
+        String url = "jdbc:hsqldb:file:example";
+        try (Connection conn = DriverManager.getConnection(url); var cache = new Ch15StatementCache(conn, 16)) {
+            for (int userId = 1; userId <= 100; userId++) {
+                try (PreparedStatement ps = cache.prepareStatement("INSERT INTO USERS VALUES(?, ?)")) {  // prepared once, reused 99 times
+                    ps.setInt(1, userId);
+                    ps.setString(2, "Potato" + userId);
+                    ps.executeUpdate();
+                }
+            }
+            try (var ps = cache.prepareStatement("SELECT * FROM exhibits"); var rs = ps.executeQuery()) {
+                while (rs.next()) System.out.println(rs.getString("name"));
+            }
+            System.out.println(cache.stats());  // hits 99, misses 2, hit rate 98.0%, evictions 0, cached 2
+        }
+    }
+
+    private final Connection conn;
+    private final Map<String, Entry> statements;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private static class Entry {
+        final String sql;
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;  // removed from cache while in use, close when returned
+
+        Entry(String sql, PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+    }
+
+    Ch15StatementCache(Connection conn, int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        this.conn = conn;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {  // accessOrder true: get() moves entry to the end, so eldest is least recently used
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) return false;
+                evictions++;
+                evict(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // Not thread-safe, like Connection itself. Use one cache per connection per thread.
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        Entry entry = statements.get(sql);
+        if (entry != null && !entry.inUse && !entry.statement.isClosed()) {
+            hits++;
+        } else {
+            misses++;
+            if (entry != null && entry.inUse) {  // same SQL used twice at once (nested), second one is not cached
+                return conn.prepareStatement(sql);
+            }
+            entry = new Entry(sql, conn.prepareStatement(sql));
+            statements.put(sql, entry);
+        }
+        entry.inUse = true;
+        return wrap(entry);
+    }
+
+    private void evict(Entry entry) {
+        if (entry.inUse) {
+            entry.evicted = true;
+            return;
+        }
+        try {
+            entry.statement.close();
+        } catch (SQLException e) {
+            // statement is being thrown away
+        }
+    }
+
+    private void giveBack(Entry entry) throws SQLException {
+        entry.inUse = false;
+        if (entry.evicted) {
+            entry.statement.close();
+            return;
+        }
+        try {
+            entry.statement.clearParameters();  // reset bind variables
+            entry.statement.clearBatch();  // rows added with addBatch() but not executed, next borrower would send them
+            entry.statement.clearWarnings();
+        } catch (SQLException e) {  // state unknown, do not hand it out again
+            statements.remove(entry.sql, entry);
+            try {
+                entry.statement.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private PreparedStatement wrap(Entry entry) {
+        var handler = new InvocationHandler() {
+            private boolean returned;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            giveBack(entry);  // Note: open ResultSet of this statement is not closed here, close it with try-with-resources.
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || entry.statement.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                }
+                if (returned) throw new SQLException("Statement is closed");
+                try {
+                    return method.invoke(entry.statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, handler);
+    }
+
+    long hits() { return hits; }
+    long misses() { return misses; }
+
+    double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    String stats() {
+        return String.format("hits %,d, misses %,d, hit rate %.1f%%, evictions %,d, cached %d", hits, misses, hitRate() * 100, evictions, statements.size());
+    }
+
+    // Closes cached statements. Does not close the connection.
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (Entry entry : statements.values()) {
+            try {
+                entry.statement.close();
+            } catch (SQLException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        statements.clear();
+        if (failure != null) throw failure;
+    }
+
+}